@@ -1,34 +1,89 @@
 package com.heslihop.wesley.gameoflife;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.PixelFormat;
 import android.graphics.PorterDuff;
+import android.graphics.Rect;
 import android.os.Handler;
 import android.os.Message;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
-public class AnimationSurfaceView extends SurfaceView implements Runnable {
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/* Draws the game. One thread (started with the view and ended by shutDown()) does all the drawing, and also carries
+ * out every Command: single steps, redraws, pausing and resuming, loading, resizing. The UI thread only queues them
+ * up. They are done in order, all that are waiting before the next frame, so the frame after a change always shows
+ * that change.
+ */
+
+public class AnimationSurfaceView extends SurfaceView implements Runnable, SurfaceHolder.Callback {
+    // Message.what of the messages sent to GameScreen. MSG_SETTLED is sent once, for the first frame after the
+    // board settles into a cycle, with the period in obj. MSG_LOADED is sent for the first frame after a load.
+    // MSG_EXPORTED says how exporting the statistics went: arg1 is 1 if they were saved, to the file in obj.
+    static final int MSG_FRAME = 0, MSG_SETTLED = 1, MSG_LOADED = 2, MSG_EXPORTED = 3;
+
     SurfaceHolder surfaceHolder;
     Canvas canvas;
-    Thread thread;
+    Thread worker;
+    private final BlockingQueue<Command> commands = new LinkedBlockingQueue<>();
     GameData gd;
+    // Works out the generations on a thread of its own. This one only draws what it hands over.
+    SimulationThread simulation;
 
     int maxX, maxY; // Maximum game drawing area in pixels
-    boolean canDraw, paused=false, changeBackground, showNextGen=true, markCellsForDeath=false, cellsHaveChanged=false;
+    boolean changeBackground, showNextGen=true, markCellsForDeath=false;
+    // Set by a redraw, and done once all the commands waiting have been, however many redraws there were
+    private boolean publishWanted = false;
+    private boolean loaded = false; // A load is waiting for its first frame, to tell GameScreen about it
+    // Whether there's a surface to draw on. Guarded by surfaceLock, which is held while drawing a frame so the
+    // surface can't go away in the middle of one.
+    private boolean hasSurface = false;
+    private final Object surfaceLock = new Object();
 
     int currentGPS = 10; // Current Generations/second. (i.e. the speed)
 
     Message msg = Message.obtain();
     Handler gameScreenhandler;
 
-    boolean advanceOne = false, justRedraw = false;
-
-    long startTimer, timeLoopTook, sleepTime, backgroundTimer;
+    int reportedPeriod = 0; // The cycle period GameScreen was last told about
+    // The generations the timeline held as of the last frame drawn, for GameScreen's timeline bar
+    volatile int timelineOldest = -1, timelineNewest = -1;
+
+    // What the screen shows right now, so the next frame only has to draw the part that changed. See
+    // findDirtyRegion().
+    private BitBoard shownBoard, shownNextBoard;
+    private int shownGeometry, shownView; // GameData's geometry and the viewport's version when they were drawn
+    private volatile boolean redrawAll = true; // Set when what's on screen can't be trusted, i.e. a new surface
+    private final Rect dirty = new Rect();
+    // When more than this share of the board has changed, everything is drawn again rather than just that part
+    static final float FULL_REDRAW_SHARE = 0.5f;
+
+    // Boards with more cells than this are drawn as a bitmap, a pixel per cell, instead of a circle per cell. See
+    // drawRaster(). -1 means never.
+    static final int DEFAULT_RASTER_THRESHOLD = 10000;
+    volatile int rasterThreshold = DEFAULT_RASTER_THRESHOLD;
+    private Bitmap raster;
+    private int[] pixels;
+    private final Rect rasterSource = new Rect(), rasterDestination = new Rect();
+
+    // The viewport as it was at the start of the frame being drawn. gd.viewport can change under us while drawing.
+    private final Viewport view = new Viewport();
+    // Two fingers pinch to zoom and drag to pan. One finger edits cells, as always.
+    private ScaleGestureDetector scaleDetector;
+    private boolean zooming = false; // From the moment two fingers go down until the last one comes up
+    private float lastFocusX, lastFocusY;
+
+    long lastFrameTime, backgroundTimer;
 
     // To keep track of touch events
     float touchX=0, touchY=0;
@@ -38,8 +93,10 @@ public class AnimationSurfaceView extends SurfaceView implements Runnable {
     public AnimationSurfaceView (Context c, Handler handler) {
         super (c);
         gd = GameData.getInstance();
+        simulation = new SimulationThread(gd);
 
         surfaceHolder = getHolder();
+        surfaceHolder.addCallback(this);
 
         // These next two work together to make any drawing go ontop of the background, but
         // areas not drawn on allow the background to show.
@@ -47,39 +104,77 @@ public class AnimationSurfaceView extends SurfaceView implements Runnable {
         surfaceHolder.setFormat (PixelFormat.TRANSPARENT);
 
         prepPaintBrushes();
+        scaleDetector = new ScaleGestureDetector(c, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScaleBegin (ScaleGestureDetector detector) {
+                lastFocusX = detector.getFocusX();
+                lastFocusY = detector.getFocusY();
+                return true;
+            }
+
+            @Override
+            public boolean onScale (ScaleGestureDetector detector) {
+                float focusX = detector.getFocusX(), focusY = detector.getFocusY();
+                gd.viewport.panBy(focusX - lastFocusX, focusY - lastFocusY);
+                gd.viewport.zoomBy(detector.getScaleFactor(), focusX, focusY);
+                lastFocusX = focusX;
+                lastFocusY = focusY;
+                viewMoved();
+                return true;
+            }
+        });
 
         // Used for sending messages back to the GameScreen Activity
         gameScreenhandler = handler;
+
+        lastFrameTime = System.currentTimeMillis();
+        worker = new Thread(this, "Drawing");
+        worker.start();
     }
 
 
-    // Only receives touch events, doesn't record swipes
+    // One finger draws cells in (or takes them out), two fingers zoom and pan instead. Cells aren't changed from
+    // here, the simulation may be in the middle of a step. The cells the finger went over are queued up (see
+    // CellEdits) and go on the board before the next step, or the redraw asked for here, whichever is first.
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         super.onTouchEvent(event);
+        scaleDetector.onTouchEvent(event);
+
+        int action = event.getActionMasked();
+        if (event.getPointerCount() > 1) zooming = true;
+        if (zooming) {
+            gd.edits.endStroke();
+            // Nothing gets edited until every finger is off the screen
+            if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) zooming = false;
+            return true;
+        }
 
         touchX = event.getX();
         touchY = event.getY();
+        if (gd.viewport.getCellWidth() == 0) return true; // No board on screen yet
 
-        // Add (or remove) a cell
-        getCell((int) touchX, (int) touchY).reverseAlivenessWithDampener();
-
-        cellsHaveChanged = true; // warn animation loop that something has changed
-
-        if (paused) {
-            // Causes cells to be redrawn but no neighbourships calculated
-            redrawButDontAdvanceGen();
+        if (action == MotionEvent.ACTION_DOWN) {
+            gd.edits.startStroke(gd.viewport.rowAt(touchY), gd.viewport.columnAt(touchX));
+        }
+        else {
+            // Where the finger was since the last event, oldest first. Fast strokes would leave gaps without.
+            for (int h = 0; h < event.getHistorySize(); h++) {
+                gd.edits.strokeTo(gd.viewport.rowAt(event.getHistoricalY(h)), gd.viewport.columnAt(event.getHistoricalX(h)));
+            }
+            gd.edits.strokeTo(gd.viewport.rowAt(touchY), gd.viewport.columnAt(touchX));
+            if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) gd.edits.endStroke();
         }
 
+        // Show it now rather than with the next generation
+        if (gd.edits.flush()) redrawButDontAdvanceGen();
+
         return true;
     }
 
-    // Takes coordinates and returns Cell at those coordinates
-    private Cell getCell (float x, float y) {
-        int row, col;
-        row = (int) (y * gd.getRowsTotal() / maxY);
-        col = (int) (x * gd.getColumnsTotal() / maxX);
-        return gd.getCell (row, col);
+    // After a zoom or pan. Gets the screen drawn again without waiting for the next generation.
+    private void viewMoved () {
+        redrawButDontAdvanceGen();
     }
 
     /* Handles updating the background and doing any transition animations that might be needed
@@ -93,7 +188,9 @@ public class AnimationSurfaceView extends SurfaceView implements Runnable {
     * thread launched from GameScreen. This would simplify things.
     */
     private void updateBackground () {
-        backgroundTimer += 1000 / currentGPS;
+        long now = System.currentTimeMillis();
+        backgroundTimer += now - lastFrameTime;
+        lastFrameTime = now;
         if (backgroundTimer > 15000) {
             changeBackground = true;
             backgroundTimer = 0;
@@ -105,185 +202,479 @@ public class AnimationSurfaceView extends SurfaceView implements Runnable {
 
     @Override
     public void run () {
-        // This loop is to get the screen parameters and then scale the drawing to the screen.
-        // Includes other tasks that don't need to be repeated in the main loop
-        // Specifically kept out of the main loop as it doesn't need to be recalculated every cycle.
-        while (canDraw && !advanceOne) {
-            if (surfaceHolder.getSurface().isValid()) {
-                canvas = surfaceHolder.lockCanvas();
-
-                maxX = canvas.getWidth();
-                maxY = canvas.getHeight();
-
-                // Having this get refreshed on every initial run cycle fixes a bug that was causing all
-                // cells to be drawn at (0,0) when in horizontal mode and loading a saved config from a different
-                // grid size.
-                if (gd.petriDish.size() != 0 && maxX != 0 && maxY != 0) {
-                    gd.resetCellCoordinates(maxX, maxY);
-                }
+        while (true) {
+            Command command;
+            try {
+                // While paused nothing changes unless a command says so. Running, commands are picked up between
+                // frames (queue() wakes this thread up if it's waiting for one).
+                command = simulation.isRunning() ? commands.poll() : commands.take();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                continue;
+            }
+            if (command != null) {
+                if (command.type == Command.Type.QUIT) break;
+                carryOut(command);
+                if (!commands.isEmpty()) continue; // Everything waiting gets done before the next frame
+            }
 
-                // This condition should only be true if the screen has just been rotated to horizontal,
-                // or a pattern saved in vertical is loaded in horizontal
-                // *** Note: Could improve this later by finding out which way it's been rotated
-                //      and then rotating the grid in the same direction to make sure up is still on
-                ///     the same side. ***
-                if (maxX > maxY && gd.getRowsTotal() > gd.getColumnsTotal()) {
-                    gd.rotatePetriDish(true);
-                    gd.resetCellCoordinates(maxX, maxY);
-                    gd.giveNeighbourIndexesToCells();
+            if (publishWanted) {
+                publishWanted = false;
+                simulation.publish();
+            }
+            // Nothing new to draw means no frame. When the simulation outruns the screen only the newest
+            // generation gets drawn, the ones before it are dropped.
+            GenerationSnapshot snapshot = simulation.takeLatest(simulation.isRunning() ? 100 : 0);
+            if (snapshot != null) drawFrame(snapshot);
+        }
+        simulation.shutDown();
+    }
+
+    private void carryOut (Command command) {
+        switch (command.type) {
+            case STEP:
+                simulation.step(command.generations); // Hands the generation over itself
+                publishWanted = false;
+                break;
+            case REDRAW:
+                // Cells drawn in, if that's what it's for. The next generation gets worked out again.
+                synchronized (gd) {
+                    gd.applyEdits();
                 }
-                // else if just rotated from horizontal to potrait
-                else if (maxX < maxY && gd.getRowsTotal() < gd.getColumnsTotal()) {
-                    gd.rotatePetriDish(false); // assumes proportions of drawing area are the same
+                publishWanted = true;
+                break;
+            case PAUSE:
+                simulation.stop();
+                break;
+            case RESUME:
+                redrawAll = true;
+                lastFrameTime = System.currentTimeMillis();
+                simulation.start();
+                break;
+            case RESIZE:
+                // The short side could be columns or rows depending on screen orientation. The long side keeps the
+                // screen's ratio.
+                if (maxX == 0 || maxY == 0) break;
+                int shortSide = command.shortSide;
+                synchronized (gd) {
+                    if (maxX > maxY) gd.resizePetriDish(shortSide, shortSide * maxX / maxY); // horizontal mode
+                    else gd.resizePetriDish(shortSide * maxY / maxX, shortSide); // portrait mode
                     gd.resetCellCoordinates(maxX, maxY);
-                    gd.giveNeighbourIndexesToCells();
                 }
-
-                // Make cells uniform size based on ratio of drawing area width to height
-                // Only if it hasn't been done already (rows == columns)
-                else if (gd.rowsTotal == gd.columnsTotal) {
-                    if (maxX > maxY) { // horizontal mode
-                        gd.setColumnsTotal(gd.getRowsTotal() * maxX / maxY);
-                    }
-                    else { // portrait mode
-                        gd.setRowsTotal(gd.getColumnsTotal() * maxY / maxX);
-                    }
+                publishWanted = true;
+                break;
+            case LOAD:
+                synchronized (gd) {
+                    gd.getDBH().getData(command.savedStateId);
+                    // Causes neighbourships and nextGen to be recalculated before redrawing
+                    gd.invalidateNextGen();
+                    fitToSurface(maxX, maxY); // It may have been saved the other way round
                 }
-
-                surfaceHolder.unlockCanvasAndPost(canvas);
-
-                // If it hasn't been initialized yet
-                // I was going to do this in the constructor but it wasn't giving me the canvas.
-                if (gd.petriDish.size() == 0) {
-                    gd.initializeCells ();
-                    gd.giveNeighbourIndexesToCells();
-                    gd.resetCellCoordinates(maxX, maxY);
-                    gd.randomize(0.5f);
+                loaded = true;
+                publishWanted = true;
+                break;
+            case CLEAR:
+                synchronized (gd) {
+                    gd.shutDownTheMatrixAndKillAllCells();
+                }
+                publishWanted = true;
+                break;
+            case RANDOMIZE:
+                synchronized (gd) {
+                    gd.randomize(command.density);
+                }
+                publishWanted = true;
+                break;
+            case SURFACE:
+                fitToSurface(command.width, command.height);
+                redrawAll = true;
+                publishWanted = true;
+                break;
+            case REWIND:
+                synchronized (gd) {
+                    if (gd.rewindTo(command.generations)) publishWanted = true;
                 }
-
                 break;
+            case CENTRE:
+                synchronized (gd) {
+                    gd.centrePattern();
+                }
+                publishWanted = true;
+                break;
+            case MIRROR:
+                synchronized (gd) {
+                    gd.mirrorPetriDish(true);
+                }
+                publishWanted = true;
+                break;
+            case SHIFT:
+                synchronized (gd) {
+                    int eighthDown = Math.max(1, gd.getRowsTotal() / 8), eighthRight = Math.max(1, gd.getColumnsTotal() / 8);
+                    gd.shiftPattern(command.down * eighthDown, command.right * eighthRight);
+                }
+                publishWanted = true;
+                break;
+            case EXPORT:
+                writeStats(command.file);
+                break;
+        }
+    }
+
+    // Writes the statistics out and tells GameScreen how it went. The file is written with the board locked, so
+    // the simulation waits for it. It only holds the recent generations.
+    private void writeStats (File file) {
+        boolean saved = true;
+        try {
+            synchronized (gd) {
+                gd.exportStats(file);
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+            saved = false;
         }
+        Message exported = Message.obtain();
+        exported.what = MSG_EXPORTED;
+        exported.arg1 = saved ? 1 : 0;
+        exported.obj = file;
+        gameScreenhandler.sendMessage(exported);
+    }
 
-        // Main animation loop
-        while (canDraw) {
-            startTimer = System.currentTimeMillis();
+    // Gets the board ready for a drawing area of the given size, first thing and whenever the surface changes
+    private void fitToSurface (int width, int height) {
+        maxX = width;
+        maxY = height;
+        if (maxX == 0 || maxY == 0) return;
+
+        synchronized (gd) {
+            // Having this get refreshed every time the surface changes fixes a bug that was causing all
+            // cells to be drawn at (0,0) when in horizontal mode and loading a saved config from a different
+            // grid size.
+            if (gd.petriDish.size() != 0) {
+                gd.resetCellCoordinates(maxX, maxY);
+            }
 
-            if (surfaceHolder.getSurface().isValid()) {
-                canvas = surfaceHolder.lockCanvas(); // gets canvas for drawing on
-                maxX = canvas.getWidth();
-                maxY = canvas.getHeight();
+            // This condition should only be true if the screen has just been rotated to horizontal,
+            // or a pattern saved in vertical is loaded in horizontal
+            // *** Note: Could improve this later by finding out which way it's been rotated
+            //      and then rotating the grid in the same direction to make sure up is still on
+            ///     the same side. ***
+            if (maxX > maxY && gd.getRowsTotal() > gd.getColumnsTotal()) {
+                gd.rotatePetriDish(true);
+                gd.resetCellCoordinates(maxX, maxY);
+            }
+            // else if just rotated from horizontal to potrait
+            else if (maxX < maxY && gd.getRowsTotal() < gd.getColumnsTotal()) {
+                gd.rotatePetriDish(false); // assumes proportions of drawing area are the same
+                gd.resetCellCoordinates(maxX, maxY);
+            }
 
-                // advance generation
-                if (cellsHaveChanged) { // for refreshing when drawing on a paused screen
-                    gd.allCellsCountNeighbours();
-                    gd.calcNextGen();
-                    cellsHaveChanged = false;
+            // Make cells uniform size based on ratio of drawing area width to height
+            // Only if it hasn't been done already (rows == columns)
+            else if (gd.rowsTotal == gd.columnsTotal) {
+                if (maxX > maxY) { // horizontal mode
+                    gd.setColumnsTotal(gd.getRowsTotal() * maxX / maxY);
                 }
-
-                if (!justRedraw) {
-                    gd.advanceGenerationUsingNextGen();
+                else { // portrait mode
+                    gd.setRowsTotal(gd.getColumnsTotal() * maxY / maxX);
                 }
+            }
 
-                gd.allCellsCountNeighbours();
-                gd.calcNextGen();
+            // If it hasn't been initialized yet
+            // I was going to do this in the constructor but it wasn't giving me the canvas.
+            if (gd.petriDish.size() == 0) {
+                gd.initializeCells ();
+                gd.resetCellCoordinates(maxX, maxY);
+                gd.randomize(0.5f);
+            }
+        }
+    }
 
-                // Resets canvas to transparent pixels
-                canvas.drawColor (Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
-                updateBackground ();
+    private void drawFrame (GenerationSnapshot snapshot) {
+        synchronized (surfaceLock) {
+            // No surface yet, or the board was resized since the snapshot was taken
+            if (!hasSurface || !snapshot.fits(gd.getRowsTotal(), gd.getColumnsTotal())) return;
+            drawSnapshot(snapshot);
+        }
 
-                // Have each cell draw itself
-                // TO-DO: Refactor - Store Paint objects in GameData and let cells pull from there. No
-                //    need to have them here. (Or allow each cell to have it's own paint objects.)
-                gd.drawSelfForAll(canvas, green_paintbrush_fill, black_paintbrush_stroke, showNextGen, markCellsForDeath);
+        timelineOldest = snapshot.getOldestGeneration();
+        timelineNewest = snapshot.getNewestGeneration();
+        msg = Message.obtain();
+        msg.arg1 = snapshot.getGeneration();
+        int period = snapshot.getCyclePeriod();
+        if (loaded) {
+            msg.what = MSG_LOADED;
+            loaded = false;
+        }
+        else if (period != 0 && reportedPeriod == 0) {
+            msg.what = MSG_SETTLED;
+            msg.obj = period;
+        }
+        reportedPeriod = period;
 
-                surfaceHolder.unlockCanvasAndPost(canvas); // draws the canvas to the screen
+        if (changeBackground) msg.arg2 = -1;
+        else msg.arg2 = 0; //maxGPS; // auto-adjusts speed Seekbar
 
-                msg = Message.obtain();
+        gameScreenhandler.sendMessage(msg);
+    }
 
-                if (changeBackground) msg.arg2 = -1;
-                else msg.arg2 = 0; //maxGPS; // auto-adjusts speed Seekbar
+    private void drawSnapshot (GenerationSnapshot snapshot) {
+        updateBackground ();
+        int geometry = gd.getGeometryVersion();
+        view.copyFrom(gd.viewport);
+        // Only what's on screen counts, so zooming in far enough goes back to drawing circles
+        boolean useRaster = rasterThreshold >= 0 && view.getVisibleCells() > rasterThreshold;
+        boolean partial = !useRaster && findDirtyRegion(snapshot, geometry);
+        if (partial && dirty.isEmpty()) return; // Nothing on screen changed
+
+        // gets canvas for drawing on. Waits for the display if need be. With a dirty region only that
+        // part has to be drawn, the rest of the screen keeps what it had. The region can come back
+        // bigger than asked for, and all of it has to be drawn then.
+        canvas = partial ? surfaceHolder.lockCanvas(dirty) : surfaceHolder.lockCanvas();
+        if (canvas == null) return;
+        maxX = canvas.getWidth();
+        maxY = canvas.getHeight();
+
+        // Resets canvas to transparent pixels. Only inside the dirty region, the canvas is clipped to it.
+        canvas.drawColor (Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+
+        // Have each cell draw itself
+        // TO-DO: Refactor - Store Paint objects in GameData and let cells pull from there. No
+        //    need to have them here. (Or allow each cell to have it's own paint objects.)
+        if (useRaster) drawRaster(snapshot);
+        else if (partial) drawDirtyRegion(snapshot);
+        else gd.drawSelfForAll(canvas, green_paintbrush_fill, black_paintbrush_stroke, snapshot, view, showNextGen, markCellsForDeath);
+
+        surfaceHolder.unlockCanvasAndPost(canvas); // draws the canvas to the screen
+        simulation.frameDrawn(snapshot);
+        if (useRaster) redrawAll = true; // Drawing cell by cell can't build on what the bitmap left
+        else remember(snapshot, geometry);
+    }
 
-                gameScreenhandler.sendMessage(msg);
+    // Works out which part of the screen the snapshot changes compared to what's shown, into 'dirty', padded by a
+    // cell all round as a cell's X (markCellsForDeath) spills a little over its square. An empty 'dirty' means
+    // nothing to draw. Returns false if the whole screen has to be drawn instead: after a new surface, a resize
+    // or anything else that moves cells around (see GameData.getGeometryVersion()), a zoom or pan, or when most of
+    // the screen changed anyway.
+    private boolean findDirtyRegion (GenerationSnapshot snapshot, int geometry) {
+        if (redrawAll || shownBoard == null || !snapshot.fits(shownBoard.rows, shownBoard.cols)
+                || geometry != shownGeometry || view.getVersion() != shownView) return false;
+
+        int[] changed = snapshot.board.boundsOfDifference(shownBoard);
+        if (showNextGen || markCellsForDeath) { // The next generation shows too
+            changed = union(changed, snapshot.nextBoard.boundsOfDifference(shownNextBoard));
+        }
+        // Cells that are still getting older change colour without changing anything else
+        if (gd.isColourByAge()) changed = union(changed, snapshot.board.boundsOfAgeingTiles());
+        if (changed == null) {
+            dirty.setEmpty();
+            return true;
+        }
+        int left = Math.max(0, (int) view.columnToX(changed[1] - 1)), top = Math.max(0, (int) view.rowToY(changed[0] - 1));
+        int right = Math.min(maxX, (int) Math.ceil(view.columnToX(changed[3] + 2)));
+        int bottom = Math.min(maxY, (int) Math.ceil(view.rowToY(changed[2] + 2)));
+        if (left >= right || top >= bottom) { // All of it off screen
+            dirty.setEmpty();
+            return true;
+        }
+        if ((long) (right - left) * (bottom - top) > FULL_REDRAW_SHARE * maxX * maxY) return false;
+        dirty.set(left, top, right, bottom);
+        return true;
+    }
 
-                // Stop here if intention is to advance just one gen, or just redrawing
-                if (advanceOne || justRedraw) {
-                    canDraw = false;
-                    advanceOne = false;
-                    justRedraw = false;
-                    pause();
-                }
-            }
+    // The box around both boxes, either of which may be null for none. Changes 'a'.
+    private static int[] union (int[] a, int[] b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        a[0] = Math.min(a[0], b[0]);
+        a[1] = Math.min(a[1], b[1]);
+        a[2] = Math.max(a[2], b[2]);
+        a[3] = Math.max(a[3], b[3]);
+        return a;
+    }
 
-            // Sleep time calculation
-            timeLoopTook = System.currentTimeMillis() - startTimer;
-            sleepTime = (1000 / currentGPS) - timeLoopTook;
-            //Log.d ("Sleep time percentage", "" + ((float) sleepTime / (float) (1000/currentGPS) * 100) + "%");
+    // Draws every cell that reaches into 'dirty', as it came back from lockCanvas()
+    private void drawDirtyRegion (GenerationSnapshot snapshot) {
+        int firstRow = Math.max(view.getFirstVisibleRow(), view.rowAt(dirty.top) - 1);
+        int lastRow = Math.min(view.getLastVisibleRow(), view.rowAt(dirty.bottom) + 1);
+        int firstCol = Math.max(view.getFirstVisibleColumn(), view.columnAt(dirty.left) - 1);
+        int lastCol = Math.min(view.getLastVisibleColumn(), view.columnAt(dirty.right) + 1);
+        gd.drawRegion(canvas, green_paintbrush_fill, black_paintbrush_stroke, snapshot, view, showNextGen,
+                markCellsForDeath, firstRow, firstCol, lastRow, lastCol);
+    }
 
-            if (sleepTime > 0) {
-                try {
-                    Thread.sleep(sleepTime);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
+    // Draws the board as one bitmap with a pixel per cell, stretched over the screen. Costs about the same
+    // however many cells are alive, where drawing circles costs a draw call or two for every one of them. No
+    // filtering when stretching, so cells come out as sharp squares. Only the visible part of the bitmap is drawn.
+    private void drawRaster (GenerationSnapshot snapshot) {
+        int rows = snapshot.board.rows, cols = snapshot.board.cols;
+        if (raster == null || raster.getWidth() != cols || raster.getHeight() != rows) {
+            if (raster != null) raster.recycle();
+            raster = Bitmap.createBitmap(cols, rows, Bitmap.Config.ARGB_8888);
+            pixels = new int[rows * cols];
         }
+        Raster.paint(pixels, snapshot.board, snapshot.nextBoard, gd.getColours(),
+                gd.isColourByAge() ? Raster.AGE_PALETTE : null, showNextGen, markCellsForDeath);
+        raster.setPixels(pixels, 0, cols, 0, 0, cols, rows);
+        int firstRow = view.getFirstVisibleRow(), firstCol = view.getFirstVisibleColumn();
+        int lastRow = view.getLastVisibleRow() + 1, lastCol = view.getLastVisibleColumn() + 1; // Exclusive
+        rasterSource.set(firstCol, firstRow, lastCol, lastRow);
+        rasterDestination.set((int) view.columnToX(firstCol), (int) view.rowToY(firstRow),
+                (int) Math.ceil(view.columnToX(lastCol)), (int) Math.ceil(view.rowToY(lastRow)));
+        canvas.drawBitmap(raster, rasterSource, rasterDestination, null);
     }
 
-    // If GameScreen Activity closes or pause button hit
-    public void pause () {
-        // This paused boolean prevents a bug caused by rotating the screen twice while animation is paused.
-        if (!paused) {
-            canDraw = false;
-            paused = true;
-
-            while (true) {
-                try {
-                    thread.join();
-                    break;
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
+    // Keeps a copy of what was just drawn for findDirtyRegion() to compare the next frame with
+    private void remember (GenerationSnapshot snapshot, int geometry) {
+        if (shownBoard == null || !snapshot.fits(shownBoard.rows, shownBoard.cols)) {
+            shownBoard = new BitBoard(snapshot.board.rows, snapshot.board.cols);
+            shownNextBoard = new BitBoard(snapshot.board.rows, snapshot.board.cols);
+        }
+        shownBoard.copyFrom(snapshot.board);
+        shownNextBoard.copyFrom(snapshot.nextBoard);
+        shownGeometry = geometry;
+        shownView = view.getVersion();
+        redrawAll = false;
+    }
+
+    @Override
+    public void surfaceCreated (SurfaceHolder holder) {
+        synchronized (surfaceLock) {
+            hasSurface = true;
+        }
+    }
+
+    @Override
+    public void surfaceChanged (SurfaceHolder holder, int format, int width, int height) {
+        queue(Command.surface(width, height));
+    }
 
-            thread = null;
+    // Waits for a frame being drawn to finish, as the surface can't be touched once this returns
+    @Override
+    public void surfaceDestroyed (SurfaceHolder holder) {
+        synchronized (surfaceLock) {
+            hasSurface = false;
         }
     }
 
+    private void queue (Command command) {
+        commands.add(command);
+        simulation.wake(); // In case the drawing thread is waiting for a generation
+    }
+
+    // If GameScreen Activity closes or pause button hit
+    public void pause () {
+        queue(Command.of(Command.Type.PAUSE));
+    }
+
     // If GameScreen Activity has been restarted or resume button hit
     public void resume () {
-        canDraw = true;
-        paused = false;
-        thread = new Thread (this);
-        thread.start();
+        queue(Command.of(Command.Type.RESUME));
     }
 
-    public void advanceOneGen () {
-        advanceOne = true;
-        resume ();
+    // One step, which is one generation unless in turbo mode
+    public void advanceOneStep () {
+        queue(Command.step(simulation.getGenerationsPerStep()));
     }
 
-    // Also called when game is paused but needs to be redrawn (i.e. size of board is changed)
+    // Also called when game is paused but needs to be redrawn (i.e. cells drawn in)
     public void redrawButDontAdvanceGen () {
-        justRedraw = true;
-        resume ();
+        queue(Command.of(Command.Type.REDRAW));
+    }
+
+    // shortSide is the number of cells along the short side of the screen
+    public void resize (int shortSide) {
+        queue(Command.resize(shortSide));
+    }
+
+    // Loads a saved state, "0" for the last one
+    public void load (String savedStateId) {
+        queue(Command.load(savedStateId));
+    }
+
+    public void clear () {
+        queue(Command.of(Command.Type.CLEAR));
+    }
+
+    public void randomize (float density) {
+        queue(Command.randomize(density));
+    }
+
+    // Back to the given generation, if the timeline still holds it, and draws it
+    public void rewindTo (int generation) {
+        queue(Command.rewind(generation));
+    }
+
+    public void centrePattern () {
+        queue(Command.of(Command.Type.CENTRE));
+    }
+
+    // Flips the pattern left to right
+    public void mirrorPattern () {
+        queue(Command.of(Command.Type.MIRROR));
+    }
+
+    // Moves the pattern down and right by the given number of eighths of the board (up and left when negative),
+    // at least a cell each. Wraps round on a toroidal board.
+    public void shiftPattern (int down, int right) {
+        queue(Command.shift(down, right));
+    }
+
+    // Saves the statistics as CSV. GameScreen gets MSG_EXPORTED when it's done.
+    public void exportStats (File file) {
+        queue(Command.export(file));
+    }
+
+    // When GameScreen is destroyed. The drawing and simulation threads finish up once what's queued is done.
+    public void shutDown () {
+        queue(Command.of(Command.Type.QUIT));
     }
 
     public void setShowNextGen(boolean showNextGen) {
+        if (showNextGen != this.showNextGen) redrawAll = true;
         this.showNextGen = showNextGen;
     }
 
     public void setMarkCellsForDeath(boolean markCellsForDeath) {
+        if (markCellsForDeath != this.markCellsForDeath) redrawAll = true;
         this.markCellsForDeath = markCellsForDeath;
     }
 
 
-    public void setCellsHaveChanged (boolean cellsHaveChanged) {
-        this.cellsHaveChanged = cellsHaveChanged;
+    // Boards with more cells than this get drawn as a bitmap. -1 for never.
+    public void setRasterThreshold (int cells) {
+        rasterThreshold = cells;
     }
 
     public void setGPS (int gps) {
         currentGPS = gps;
+        simulation.setGPS(gps);
+    }
+
+    // Turbo mode: how many generations to work out between drawings. 1 is off.
+    public void setTurbo (int generationsPerFrame) {
+        simulation.setGenerationsPerStep(generationsPerFrame);
+    }
+
+    public boolean isTurbo () {
+        return simulation.getGenerationsPerStep() > 1;
+    }
+
+    // How long frames are taking. See FrameStats.
+    public FrameStats getFrameStats () {
+        return simulation.getFrameStats();
+    }
+
+    // The speed the game is really running at, which in turbo mode is a lot more than currentGPS
+    public int getMeasuredGPS () {
+        return simulation.getMeasuredGPS();
+    }
+
+    public int getTimelineOldest () {
+        return timelineOldest;
+    }
+
+    public int getTimelineNewest () {
+        return timelineNewest;
     }
 
     private void prepPaintBrushes() {
@@ -1,72 +1,34 @@
 package com.heslihop.wesley.gameoflife;
 
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Paint;
 import java.io.Serializable;
 
 public class Cell implements Serializable{
     // All things transient that don't need to be stored in database
     // Better to save space in Database and recalculate what's needed upon inflating
-    boolean alive;
-    transient boolean nextGen;
-    transient int neighbourCount;
-    transient int[] indexOfNeighbourCells;
-    transient float x, y; // x and y coordinates
+    // Whether the cell is alive (and will be next generation) is held in GameData's bit boards. The cell only
+    // remembers where it sits in them.
+    transient int index = -1;
     transient GameData gd;
-    transient int colour;
-    transient long timestampForAliveDampenerOld=0, timestampForAliveDampenerNew;
 
     public Cell () {
-        indexOfNeighbourCells = new int[8];
-        alive = false;
         gd = GameData.getInstance();
-
-        // Used to randomize cell colour for now.
-        colour = Color.rgb ((int) (Math.random() * 255), (int) (Math.random() * 255), (int) (Math.random() * 255));
-    }
-
-    public void advanceGeneration () {
-        if (alive && gd.need2Survive.contains(neighbourCount)) {
-            alive = true;
-            // Do nothing. Is alive and stays alive.
-        }
-        else if (alive) {
-            alive = false; // dies of loneliness or overcrowding
-        }
-        // If not alive and conditions are right to be born
-        else if (gd.need2BeBorn.contains(neighbourCount)) {
-            alive = true;
-        }
-        // Else continue empty
-        else {
-            alive = false;
-        }
-    }
-
-    public void determineNextGen () {
-        if (alive && gd.need2Survive.contains(neighbourCount)) {
-            nextGen = true;
-        }
-        else if (alive) {
-            nextGen = false; // dies of loneliness or overcrowding
-        }
-        // If not alive and conditions are right to be born
-        else if (gd.need2BeBorn.contains(neighbourCount)) {
-            nextGen = true;
-        }
-        // Else continue empty
-        else {
-            nextGen = false;
-        }
     }
 
-    public void setAliveToNextGen () {
-        alive = nextGen;
+    public void drawSelf (Canvas c, Paint p, Paint black, boolean showNextGen, boolean markForDeath) {
+        drawSelf(c, p, black, gd.simulation.getBoard(), gd.simulation.getNextBoard(), gd.viewport, showNextGen, markForDeath);
     }
 
-    public void drawSelf (Canvas c, Paint p, Paint black, boolean showNextGen, boolean markForDeath) {
-        int radius = gd.cellRadius;
+    // The boards are passed in when drawing from a GenerationSnapshot rather than the live ones. Where the cell goes
+    // on screen comes from the viewport, from its row and column.
+    public void drawSelf (Canvas c, Paint p, Paint black, BitBoard board, BitBoard next, Viewport view,
+                          boolean showNextGen, boolean markForDeath) {
+        if (index == -1) return; // Not on the board yet
+        boolean alive = board.get(index), nextGen = next.get(index);
+        float x = view.columnToX(index % board.cols + 0.5f), y = view.rowToY(index / board.cols + 0.5f);
+        int radius = view.getCellRadius();
+        int colour = gd.colourOf(index, board); // Kept in GameData so it moves with the board
 
         if (alive) {
             p.setAlpha (250);
@@ -96,41 +58,16 @@ public class Cell implements Serializable{
         }
     }
 
-    public void countLiveNeighbours() {
-        neighbourCount = 0;
-        for (int i : indexOfNeighbourCells) {
-            if (i != -1 && gd.petriDish.get(i).isAlive()) {
-                neighbourCount++;
-            }
-        }
-    }
-
-    // If you put the cell in the middle and count all the neighbours starting from the top left
-    // and going clockwise, their associated number is the 'pos' variable
-    public void addNeighbour (int neigh, int pos) {
-        indexOfNeighbourCells[pos] = neigh;
-    }
-
-    public void resetNeighbours () {
-        indexOfNeighbourCells = new int[8];
-    }
-
-    // Reverses aliveness, but only if it hasn't already been reversed in the last 1000 milliseconds.
-    // This avoids problems with one touch event being reported many times.
-    public void reverseAlivenessWithDampener () {
-        // Supposedly currentTimeMillis uses less CPU cycles than nanoTime.
-        timestampForAliveDampenerNew = System.currentTimeMillis();
-        if (timestampForAliveDampenerNew - timestampForAliveDampenerOld > 1000) alive = !alive;
-
-        timestampForAliveDampenerOld = timestampForAliveDampenerNew;
-    }
-
     //// **** Only getters and setters after this point **** ////
 
-    public void reverseAliveness () { alive = !alive; }
+    public void reverseAliveness () { setAlive(!isAlive()); }
 
     public boolean isAlive() {
-        return alive;
+        return index != -1 && gd.simulation.getBoard().get(index);
+    }
+
+    public boolean isNextGen() {
+        return index != -1 && gd.simulation.getNextBoard().get(index);
     }
 
     public void setGD (GameData gd) {
@@ -138,37 +75,13 @@ public class Cell implements Serializable{
     }
 
     public void setAlive(boolean alive) {
-        this.alive = alive;
+        if (index != -1) gd.setAlive(index, alive);
     }
 
-    public int getNeighbourCount() {
-        return neighbourCount;
-    }
+    public void setNextGen (boolean nextGen) { if (index != -1) gd.simulation.getNextBoard().set(index, nextGen); }
 
-    public void setNeighbourCount(int neighbourCount) {
-        this.neighbourCount = neighbourCount;
-    }
+    public int getIndex() { return index; }
 
-    public void setNextGen (boolean nextGen) { this.nextGen = nextGen; }
+    public void setIndex(int index) { this.index = index; }
 
-    public float getX() {
-        return x;
-    }
-
-    public void setX(int x) {
-        this.x = x;
-    }
-
-    public float getY() {
-        return y;
-    }
-
-    public void setY(int y) {
-        this.y = y;
-    }
-
-    public void setXandY (float x, float y) {
-        this.x = x;
-        this.y = y;
-    }
 }
@@ -0,0 +1,88 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.io.File;
+
+/* Something for AnimationSurfaceView's drawing thread to do. Everything that changes what's on screen (steps,
+ * redraws, pausing, loading, a new board size, moving the pattern about and so on) is queued up as one of these and carried out on that one
+ * thread, in the order it was asked for, between frames. So a change can never be drawn over by a frame from before
+ * it, and nothing needs a thread of its own.
+ *
+ * Only the fields that go with the type mean anything. Make them with the static methods.
+ */
+
+class Command {
+    enum Type {
+        STEP,       // Advance 'generations' generations, and draw the last one
+        REDRAW,     // Draw the current generation again, i.e. after cells were drawn in or the view moved
+        PAUSE,
+        RESUME,
+        RESIZE,     // A new board size, 'shortSide' cells along the short side of the screen
+        LOAD,       // The saved state 'savedStateId' ("0" for the last one loaded)
+        CLEAR,
+        RANDOMIZE,  // Each cell alive with a chance of 'density'
+        SURFACE,    // The drawing area is now 'width' x 'height' pixels
+        REWIND,     // Back to generation 'generations', if the timeline still has it
+        CENTRE,     // Move the pattern to the middle of the board
+        MIRROR,     // Flip the pattern left to right
+        SHIFT,      // Move the pattern 'down' and 'right' eighths of the board
+        EXPORT,     // Save the statistics to 'file'. GameScreen hears how it went (MSG_EXPORTED).
+        QUIT        // The view is done with. The thread (and the simulation's) ends.
+    }
+
+    final Type type;
+    final int generations, shortSide, width, height, down, right;
+    final float density;
+    final String savedStateId;
+    final File file;
+
+    private Command (Type type, int generations, int shortSide, int width, int height, int down, int right,
+                     float density, String savedStateId, File file) {
+        this.type = type;
+        this.generations = generations;
+        this.shortSide = shortSide;
+        this.width = width;
+        this.height = height;
+        this.down = down;
+        this.right = right;
+        this.density = density;
+        this.savedStateId = savedStateId;
+        this.file = file;
+    }
+
+    // For the types that need nothing else
+    static Command of (Type type) {
+        return new Command(type, 0, 0, 0, 0, 0, 0, 0, null, null);
+    }
+
+    static Command step (int generations) {
+        return new Command(Type.STEP, generations, 0, 0, 0, 0, 0, 0, null, null);
+    }
+
+    static Command resize (int shortSide) {
+        return new Command(Type.RESIZE, 0, shortSide, 0, 0, 0, 0, 0, null, null);
+    }
+
+    static Command load (String savedStateId) {
+        return new Command(Type.LOAD, 0, 0, 0, 0, 0, 0, 0, savedStateId, null);
+    }
+
+    static Command randomize (float density) {
+        return new Command(Type.RANDOMIZE, 0, 0, 0, 0, 0, 0, density, null, null);
+    }
+
+    static Command surface (int width, int height) {
+        return new Command(Type.SURFACE, 0, 0, width, height, 0, 0, 0, null, null);
+    }
+
+    static Command rewind (int generation) {
+        return new Command(Type.REWIND, generation, 0, 0, 0, 0, 0, 0, null, null);
+    }
+
+    static Command shift (int down, int right) {
+        return new Command(Type.SHIFT, 0, 0, 0, 0, down, right, 0, null, null);
+    }
+
+    static Command export (File file) {
+        return new Command(Type.EXPORT, 0, 0, 0, 0, 0, 0, 0, null, file);
+    }
+}
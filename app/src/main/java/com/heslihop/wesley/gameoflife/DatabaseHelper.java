@@ -66,8 +66,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     // Else adds in as a new line
     public boolean saveCurrent (String name, boolean last_random) {
         // Create needed blobs
-        byte[] need2BeBorn = SerializationUtils.serialize((Serializable) gd.need2BeBorn);
-        byte[] need2Survive = SerializationUtils.serialize((Serializable) gd.need2Survive);
+        // Rules are still stored as lists of neighbour counts so older saves keep loading.
+        byte[] need2BeBorn = SerializationUtils.serialize((Serializable) gd.getRule().getBirthCounts());
+        byte[] need2Survive = SerializationUtils.serialize((Serializable) gd.getRule().getSurvivalCounts());
         byte[] matrixOfAliveStates = SerializationUtils.serialize(gd.getMeArrayOfLiveStates());
 
         SQLiteDatabase db = this.getWritableDatabase();
@@ -158,7 +159,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             int[] matrix = SerializationUtils.deserialize(matrixOfAliveStates);
 
             // Call GameData method to inflate properly
-            gd.inflateThis(rows, cols, n2bBorn, n2Survive, matrix);
+            gd.inflateThis(rows, cols, Rule.fromCounts(n2bBorn, n2Survive), matrix);
 
             Log.d("Inflated", cursor.getString(cursor.getColumnIndex(NAME_OF_STATE)));
         }
@@ -1,11 +1,15 @@
 package com.heslihop.wesley.gameoflife;
 
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
-import android.util.Log;
+import android.os.Build;
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 /* This class is designed to be a singleton.
  * It holds all the important data and logic for the actual game. Having this data encapsulated here instead of
@@ -14,33 +18,38 @@ import java.util.List;
 
 public class GameData implements Serializable {
     private static GameData instance = new GameData();
+    // Roughly how much memory the recent generations kept for rewinding may take up. See Timeline.
+    private static final long TIMELINE_BYTES = 8 << 20;
 
-    boolean toroidal = true;
     int rowsTotal=15, columnsTotal=15;
-    int cellRadius=35;
-    int generationCounter = 0;
-    transient float cellWidth, cellHeight, oldCellWidth, oldCellHeight;
-
+    // Where the board is on screen and how far it's zoomed in. See Viewport.
+    transient Viewport viewport = new Viewport();
+    // Cells drawn in by touch that aren't on the board yet. See CellEdits.
+    transient CellEdits edits = new CellEdits();
+
+    // The actual state of the world and the rules that move it on, i.e. everything that isn't about the screen.
+    // Lives in the core module so it can also be run without Android. See Simulation.
+    Simulation simulation = new Simulation(rowsTotal, columnsTotal);
     transient private DatabaseHelper dbh;
     transient private String lastID; // Held here for DatabaseHelper so information is not lost on screen rotations.
 
-    // The fundamental rules for Conway's The Game of Life
-    // Created this way to allow users to edit later on
-    public static List<Integer> need2Survive, need2BeBorn;
     // Static so individual cells can access other cells using their own instance methods without the need to have
-    // a reference to GameData in each Cell.
+    // a reference to GameData in each Cell. Cells look their state up in simulation's boards by index.
     public static List<Cell> petriDish;
+    // Every cell's colour, in petriDish order. Cells look theirs up by index, so moving the board around only has
+    // to move this array (see Geometry), not the cells.
+    transient private int[] colours;
+    private static final Random colourRandom = new Random();
+    // Goes up whenever cells move, get new colours or new screen coordinates, so the drawing side knows that
+    // what's on screen can't just be patched up where the cells changed. See AnimationSurfaceView.
+    transient private volatile int geometryVersion = 0;
+    // Colour cells by how long they've been alive (see Raster.AGE_PALETTE) rather than by their own colour
+    transient private volatile boolean colourByAge = false;
 
     private GameData () {
-        // Initialize rules.
-        // These will be the default rules. Changeable by user later.
-        need2Survive = new ArrayList<Integer>();
-        need2Survive.add(2); need2Survive.add(3);
-        need2BeBorn = new ArrayList<Integer>();
-        need2BeBorn.add(3);
-
         // Initialize world
         petriDish = new ArrayList<Cell>();
+        simulation.setTimelineBytes(TIMELINE_BYTES);
     }
 
     public static GameData getInstance () {
@@ -49,13 +58,12 @@ public class GameData implements Serializable {
 
     // Randomizes entire grid to whatever desired ratio is.
     public void randomize (float ratio) {
+        if (simulation.isInfinite()) simulation.getUniverse().clear();
         for (Cell c : petriDish) {
             if (Math.random() < ratio) c.setAlive(true);
             else c.setAlive(false);
         }
-        allCellsCountNeighbours();
-        calcNextGen();
-        generationCounter = 0;
+        simulation.restart();
 
         // Save to database as "last_random"
         if (dbh != null) dbh.saveCurrent("last_random", true);
@@ -63,49 +71,65 @@ public class GameData implements Serializable {
 
     // Do you really need a comment to understand this method?!
     public void shutDownTheMatrixAndKillAllCells () {
-        generationCounter = 0;
-        for (Cell c : petriDish) {
-            c.setAlive(false);
-            c.setNextGen(false);
-            c.setNeighbourCount(0);
-        }
+        simulation.clear();
     }
 
+    // Sets a single cell, i.e. from a touch. The next generation will have to be recalculated.
+    public void setAlive (int index, boolean alive) {
+        simulation.setAlive(index, alive);
+    }
+
+    // Puts the cells drawn in since last time on the board. Only between generations, i.e. with this locked.
+    // Returns whether anything changed.
+    public boolean applyEdits () {
+        return edits.applyTo(simulation);
+    }
+
+    // Called whenever board changes other than by advancing. Any cycle found so far no longer holds either.
+    public void invalidateNextGen () {
+        simulation.invalidateNextGen();
+    }
+
+    // Makes sure nextBoard holds the generation after board, calculating it only if it doesn't already.
+    public void ensureNextGen () {
+        simulation.ensureNextGen();
+    }
+
+    // See Simulation.calcNextGen()
     public void calcNextGen () {
-        allCellsCountNeighbours();
-        for (Cell c : petriDish) {
-            c.determineNextGen();
-        }
+        simulation.calcNextGen();
+    }
+
+    // See Simulation.jumpGenerations()
+    public void jumpGenerations (int generations) {
+        simulation.jumpGenerations(generations);
     }
 
     // Returns an array of integers reflecting the current state of petriDish's cells (whether alive
     //   or not). This is to be used for Serialization
     public int[] getMeArrayOfLiveStates () {
-        int[] arrayOfStates = new int[petriDish.size()];
+        int[] arrayOfStates = new int[rowsTotal * columnsTotal];
 
-        for (int i = 0; i < arrayOfStates.length; i++) {
-            arrayOfStates[i] = (petriDish.get(i).isAlive()) ? 1 : 0 ;
+        for (int r = 0; r < rowsTotal; r++) {
+            for (int c = 0; c < columnsTotal; c++) {
+                arrayOfStates[r * columnsTotal + c] = simulation.getBoard().get(r, c) ? 1 : 0;
+            }
         }
 
         return arrayOfStates;
     }
 
     // Takes data and inflates a matrix state that was pulled from the database
-    public void inflateThis (int rows, int cols, List<Integer> n2bBorn, List <Integer> n2Survive, int[] matrix) {
+    public void inflateThis (int rows, int cols, Rule rule, int[] matrix) {
         // According to Occams Razor the simplest way is the best. Instead of trying to preserve and resize petriDish we
         // will destroy and create anew. On the other hand if the size of the list is the same as the size of the old then we can
         // keep it. This will be handy when restarting from last random or from last load
 
-        need2Survive = n2Survive;
-        need2BeBorn = n2bBorn;
+        setRule(rule);
 
         // If same dimensions then just go with it
         if (rows == rowsTotal && cols == columnsTotal && matrix.length == petriDish.size()) {
 //            this.toroidal = (toroidal == 1) ? true : false;   // ** No longer recording Toroidal in saved states
-
-            for (int i = 0; i < matrix.length; i++) {
-                petriDish.get(i).setAlive((matrix[i]==1) ? true : false);
-            }
         }
         else { // re-do everything
             rowsTotal = rows;
@@ -114,46 +138,46 @@ public class GameData implements Serializable {
             petriDish = new ArrayList<>();
             for (int z = 0; z < matrix.length; z++) {
                 petriDish.add(new Cell());
-                petriDish.get(z).setAlive((matrix[z]==1) ? true : false);
             }
-
-            giveNeighbourIndexesToCells();
+            newBoards();
         }
 
-        setGenerationCounter(0);
+        simulation.load(matrix);
     }
 
-    // Initialize coordinates on first load or change in grid size
+    // Fits the viewport to the drawing area on first load or change in grid size. Cells work out where they are on
+    // screen from it when they're drawn.
     public void resetCellCoordinates (int maxX, int maxY) {
-        oldCellHeight = cellHeight;
-        oldCellWidth = cellWidth;
+        viewport.setSize(maxX, maxY, rowsTotal, columnsTotal);
+        geometryVersion++;
+    }
+
+    // Advances generation using a the nextGen value in cells - i.e. using the the nextGen info the cells have
+    // already calculated
+    // See Simulation.advance()
+    public void advanceGenerationUsingNextGen () {
+        simulation.advance();
+    }
 
-        cellWidth = (float) maxX / columnsTotal;
-        cellHeight = (float) maxY / rowsTotal;
-        cellRadius = (int) (cellWidth * 0.4);
+    // Puts the board back to a recent generation. See Simulation.rewindTo(). Call with the GameData lock held if
+    // the game is running.
+    public boolean rewindTo (int generation) {
+        return simulation.rewindTo(generation);
+    }
 
-        for (int c = 0; c < columnsTotal; c++) {
-            for (int r = 0; r < rowsTotal; r++) {
-                petriDish.get(c + r* columnsTotal).setXandY ((c+0.5f) * cellWidth, (r+0.5f) * cellHeight);
-            }
-        }
+    public GenerationStats getStats () {
+        return simulation.getStats();
     }
 
-    // The previous version of the method the advance generations before nextGen was introduced.
-    public void advanceGenerationForAll () {
-        generationCounter++;
-        for (Cell c : petriDish) {
-            c.advanceGeneration();
-        }
+    // Writes the recorded statistics to a CSV file. Call with the GameData lock held if the game is running.
+    public void exportStats (File file) throws IOException {
+        simulation.exportStats(file);
     }
 
-    // Advances generation using a the nextGen value in cells - i.e. using the the nextGen info the cells have
-    // already calculated
-    public void advanceGenerationUsingNextGen () {
-        generationCounter++;
-        for (Cell c : petriDish) {
-            c.setAliveToNextGen ();
-        }
+    // The period the board has settled into: 1 when nothing changes any more, 2 for blinkers and so on. 0 if it
+    // hasn't settled (yet).
+    public int getCyclePeriod () {
+        return simulation.getCyclePeriod();
     }
 
     public void drawSelfForAll (Canvas canvas, Paint g, Paint b, boolean showNextGen, boolean markForDeath) {
@@ -162,227 +186,159 @@ public class GameData implements Serializable {
         }
     }
 
+    // Same, but draws a generation handed over by the simulation thread instead of the live boards, which may
+    // already have moved on, as seen through 'view'. Only the cells on screen are drawn.
+    public void drawSelfForAll (Canvas canvas, Paint g, Paint b, GenerationSnapshot snapshot, Viewport view,
+                                boolean showNextGen, boolean markForDeath) {
+        drawRegion(canvas, g, b, snapshot, view, showNextGen, markForDeath, view.getFirstVisibleRow(),
+                view.getFirstVisibleColumn(), view.getLastVisibleRow(), view.getLastVisibleColumn());
+    }
+
+    // Only the cells from firstRow to lastRow and firstCol to lastCol (inclusive), for when only part of the
+    // screen is being drawn again
+    public void drawRegion (Canvas canvas, Paint g, Paint b, GenerationSnapshot snapshot, Viewport view,
+                            boolean showNextGen, boolean markForDeath, int firstRow, int firstCol, int lastRow, int lastCol) {
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstCol; c <= lastCol; c++) {
+                int i = r * columnsTotal + c;
+                petriDish.get(i).drawSelf(canvas, g, b, snapshot.board, snapshot.nextBoard, view, showNextGen, markForDeath);
+            }
+        }
+    }
+
     public void initializeCells () {
         petriDish.clear();
         for (int z = 0; z < columnsTotal * rowsTotal; z++) {
             petriDish.add(new Cell());
         }
+        newBoards();
     }
 
-    public void allCellsCountNeighbours () {
-        for (Cell c : petriDish) {
-            c.countLiveNeighbours();
+    // Gives the boards a fresh start at the current size, with new colours, and tells every cell where it now is.
+    private void newBoards () {
+        simulation.newBoards(rowsTotal, columnsTotal);
+        colours = new int[rowsTotal * columnsTotal];
+        for (int i = 0; i < colours.length; i++) {
+            colours[i] = randomColour();
         }
+        indexCells();
+        geometryVersion++;
+    }
+
+    // Used to randomize cell colour for now. One random int split into red, green and blue, as thousands of these
+    // are needed whenever the board grows.
+    private static int randomColour () {
+        int bits = colourRandom.nextInt();
+        return Color.rgb((bits >>> 16) & 0xFF, (bits >>> 8) & 0xFF, bits & 0xFF);
+    }
+
+    public int getColour (int index) {
+        return colours[index];
+    }
 
+    // The colour to draw the cell at 'index' with when it's alive on 'board', which holds its age
+    public int colourOf (int index, BitBoard board) {
+        if (colourByAge && board.isTrackingAges()) return Raster.AGE_PALETTE[board.getAge(index)];
+        return colours[index];
+    }
+
+    public boolean isColourByAge () {
+        return colourByAge;
+    }
+
+    // The simulation only keeps ages while they're wanted, as it costs a little on every step
+    public void setColourByAge (boolean colourByAge) {
+        if (colourByAge == this.colourByAge) return;
+        this.colourByAge = colourByAge;
+        simulation.setTrackingAges(colourByAge);
+        geometryVersion++; // Every colour on screen changes
+    }
+
+    // All of them at once, in petriDish order, for drawing the board as a bitmap (see Raster)
+    public int[] getColours () {
+        return colours;
+    }
+
+    public int getGeometryVersion () {
+        return geometryVersion;
+    }
+
+    // Lets each cell know its position in petriDish, which is also its position in the boards. That's all a cell
+    // needs to know, its neighbours are found from its row and column.
+    private void indexCells () {
+        for (int i = 0; i < petriDish.size(); i++) {
+            petriDish.get(i).setIndex(i);
+        }
     }
 
     // Rotates the matrix clockwise or counterclockwise depending on the boolean.
     // To be called after a screen rotation
+    // The cells stay where they are in petriDish, as they only draw whatever is at their index. Only the boards
+    // and the colours are turned.
     public void rotatePetriDish (boolean clockwise) {
-        List<Cell> newPetri = new ArrayList<> ();
+        colours = Geometry.rotated(colours, rowsTotal, columnsTotal, clockwise);
+        simulation.rotate(clockwise);
 
-        if (clockwise) {
-            for (int c = 0; c < columnsTotal; c++) {
-                for (int r = rowsTotal - 1; r >= 0; r--) {
-                    newPetri.add(petriDish.get((r* columnsTotal) + c));
-                }
-            }
-        }
-        else {
-            for (int c = columnsTotal - 1; c >= 0; c--) {
-                for (int r = 0; r < rowsTotal; r++) {
-                    newPetri.add(petriDish.get((r* columnsTotal) + c));
-                }
-            }
-        }
         int temp = rowsTotal;
         rowsTotal = columnsTotal;
         columnsTotal = temp;
-
-        petriDish = newPetri;
+        geometryVersion++;
     }
 
-
-    // Resizes the array. Needs to fill in or remove cells as needed.
-    // Uses the power of Math to determine correct indexes for adding / removing cells.
+    // Resizes the board, keeping it centred. Cells that fall off the edges are dropped and the new ones get a
+    // random colour. petriDish only has to grow or shrink at the end, see rotatePetriDish().
     public void resizePetriDish (int newNumOfRows, int newNumOfCols) {
-
-        // When the new board is smaller than the total size of board.
-        if (newNumOfRows <= rowsTotal) {
-            // I'm not even going to try to explain what these do. Just trust it's Math and it works.
-            int rowsBefDel, colsBefDel, colsAfterDel;
-            rowsBefDel = (rowsTotal - newNumOfRows) / 2;
-            colsBefDel = (columnsTotal - newNumOfCols) / 2;
-            colsAfterDel = columnsTotal - newNumOfCols - colsBefDel;
-
-            petriDish.subList(0, columnsTotal * rowsBefDel + colsBefDel).clear();
-            for (int i = 1; i < newNumOfRows; i++) {
-                petriDish.subList (newNumOfCols * i, newNumOfCols * i + colsBefDel + colsAfterDel).clear();
-            }
-            petriDish.subList(newNumOfCols * newNumOfRows, petriDish.size()).clear();
-        }
-
-        // Else we are increasing the size. Similar procedure but exactly the opposite and nothing like it.
-        else {
-            int rowsBef, rowsAfter, colsBef, colsAfter, index;
-            rowsBef = (newNumOfRows - rowsTotal) / 2;
-            rowsAfter = (newNumOfRows - rowsTotal) - rowsBef;
-            colsBef = (newNumOfCols - columnsTotal) / 2;
-            colsAfter = (newNumOfCols - columnsTotal) - colsBef;
-
-            for (int i = 0; i < rowsBef * newNumOfCols + colsBef; i++) {
-                petriDish.add(0, new Cell());
-            }
-            for (int r = 0; r < rowsTotal - 1; r++) {
-                index = ((rowsBef+r) * newNumOfCols) + colsBef + columnsTotal;
-                for (int i = 0; i < colsAfter + colsBef; i++) {
-                    petriDish.add (index + 0, new Cell());
-                }
-            }
-            for (int r = 0; r < rowsAfter * newNumOfCols + colsAfter; r++) {
-                petriDish.add (new Cell());
-            }
+        colours = Geometry.resized(colours, rowsTotal, columnsTotal, newNumOfRows, newNumOfCols, 0);
+        for (int i = 0; i < colours.length; i++) {
+            if (colours[i] == 0) colours[i] = randomColour(); // Opaque colours are never 0
         }
-
+        simulation.resize(newNumOfRows, newNumOfCols);
         rowsTotal = newNumOfRows;
         columnsTotal = newNumOfCols;
-        giveNeighbourIndexesToCells();
-    }
-
-    // Does what the name suggests -> Lets each cell know what the neighbour indexes of it's neighbours are.
-    // Should only be needed on initialization of the grid, and if the grid size changes for any reason
-    // Toroidal is true when the universe 'wraps around'.
-    //   i.e. a cell on the extreme right will be a neighbour to the corresponding one on the extreme left
-    //        as well as extreme top neighbouring with bottom.
-    public void giveNeighbourIndexesToCells () {
-        if (petriDish.size() == 0) {
-            Log.d ("Error!", "petriDish size was 0");
-            return;
-        }
 
-        for (Cell c : petriDish) {
-            c.resetNeighbours();
+        int size = newNumOfRows * newNumOfCols;
+        if (petriDish.size() > size) petriDish.subList(size, petriDish.size()).clear();
+        while (petriDish.size() < size) {
+            Cell cell = new Cell();
+            cell.setIndex(petriDish.size());
+            petriDish.add(cell);
         }
+        geometryVersion++;
+    }
 
-        int index;
-        for (int r = 0; r < rowsTotal; r++) {
-            for (int c = 0; c < columnsTotal; c++) {
-                index = (r* columnsTotal) + c;
-
-                // Add neighbours to the right and left
-                if (c < columnsTotal - 1) {
-                    petriDish.get(index).addNeighbour(index + 1, 3);
-                    petriDish.get(index+1).addNeighbour(index, 7);
-                }
-                else if (toroidal) {
-                    petriDish.get(index).addNeighbour(r* columnsTotal, 3);
-                    petriDish.get(r* columnsTotal).addNeighbour(index, 7);
-                }
-                // if neighbour is offscreen and toroidal is not in effect, set neighbour value to -1
-                else {
-                    petriDish.get(index).addNeighbour(-1, 3);
-                    petriDish.get(r* columnsTotal).addNeighbour(-1, 7);
-                }
-
-                // Add neighbours on top and bottom
-                if (r < rowsTotal - 1) {
-                    petriDish.get(index).addNeighbour(index + columnsTotal, 5);
-                    petriDish.get(index+ columnsTotal).addNeighbour(index, 1);
-                }
-                else if (toroidal) {
-                    petriDish.get(index).addNeighbour(c, 5);
-                    petriDish.get(c).addNeighbour(index, 1);
-                }
-                // if neighbour is offscreen and toroidal is not in effect, set neighbour value to -1
-                else {
-                    petriDish.get(index).addNeighbour(-1, 5);
-                    petriDish.get(c).addNeighbour(-1, 1);
-                }
-
-                // Add neighbours to top right and bottom left
-                if (r > 0 && c < columnsTotal - 1) { // not first row and not last column
-                    petriDish.get(index).addNeighbour( (((r-1)* columnsTotal) + (c+1)) , 2);
-                    petriDish.get(((r-1)* columnsTotal) + (c+1)).addNeighbour(index, 6);
-                }
-                else if (r > 0 && c == columnsTotal - 1) { // is last column excluding top right
-                    if (toroidal) {
-                        petriDish.get(index).addNeighbour((r - 1) * columnsTotal, 2);
-                        petriDish.get((r - 1) * columnsTotal).addNeighbour(index, 6);
-                    }
-                    else {
-                        petriDish.get(index).addNeighbour(-1, 2);
-                        petriDish.get((r - 1) * columnsTotal).addNeighbour(-1, 6);
-                    }
-                }
-                else if (r == 0 && c != columnsTotal - 1){ // is first row, excluding last column
-                    if (toroidal) {
-                        petriDish.get(index).addNeighbour((rowsTotal - 1) * columnsTotal + c + 1, 2);
-                        petriDish.get((rowsTotal - 1) * columnsTotal + c + 1).addNeighbour(index, 6);
-                    }
-                    else {
-                        petriDish.get(index).addNeighbour(-1, 2);
-                        petriDish.get((rowsTotal - 1) * columnsTotal + c + 1).addNeighbour(-1, 6);
-                    }
-                }
-                else { // is top right
-                    if (toroidal) {
-                        petriDish.get(index).addNeighbour((rowsTotal -1) * columnsTotal, 2);
-                        petriDish.get((rowsTotal -1) * columnsTotal).addNeighbour(index, 6);
-                    }
-                    else {
-                        petriDish.get(index).addNeighbour(-1, 2);
-                        petriDish.get((rowsTotal -1) * columnsTotal).addNeighbour(-1, 6);
-                    }
-                }
-
-                // Add neighbours to top left and bottom right
-                if (r > 0 && c > 0) { // not first row or first column
-                    petriDish.get(index).addNeighbour(((r-1)* columnsTotal) + (c-1), 0);
-                    petriDish.get(((r-1)* columnsTotal) + (c-1)).addNeighbour(index, 4);
-                }
-                else if (r > 0 && c == 0) { // Is first column excluding top left cell.
-                    if (toroidal) {
-                        petriDish.get(index).addNeighbour(r* columnsTotal - 1, 0);
-                        petriDish.get(r* columnsTotal - 1).addNeighbour(index, 4);
-                    }
-                    else {
-                        petriDish.get(index).addNeighbour(-1, 0);
-                        petriDish.get(r* columnsTotal - 1).addNeighbour(-1, 4);
-                    }
-                }
-                else if (r == 0 && c > 0) { // Is first row excluding top left cell.
-                    if (toroidal) {
-                        petriDish.get(index).addNeighbour((rowsTotal -1)* columnsTotal + c - 1, 0);
-                        petriDish.get((rowsTotal -1)* columnsTotal + c - 1).addNeighbour(index, 4);
-                    }
-                    else {
-                        petriDish.get(index).addNeighbour(-1, 0);
-                        petriDish.get((rowsTotal -1)* columnsTotal + c - 1).addNeighbour(-1, 4);
-                    }
-                }
-                else { // top left cell
-                    if (toroidal) {
-                        petriDish.get(index).addNeighbour(rowsTotal * columnsTotal - 1, 0);
-                        petriDish.get(rowsTotal * columnsTotal - 1).addNeighbour(index, 4);
-                    }
-                    else {
-                        petriDish.get(index).addNeighbour(-1, 0);
-                        petriDish.get(rowsTotal * columnsTotal - 1).addNeighbour(-1, 4);
-                    }
-                }
-            }
-        }
+    // Flips the board left to right or top to bottom
+    public void mirrorPetriDish (boolean leftRight) {
+        Geometry.mirror(colours, rowsTotal, columnsTotal, leftRight);
+        simulation.mirror(leftRight);
+        geometryVersion++;
+    }
+
+    // Moves the pattern down and right by the given number of cells (up and left when negative). See
+    // Simulation.shift(). The colours always wrap round so they keep going with their cells.
+    public void shiftPattern (int down, int right) {
+        colours = Geometry.shifted(colours, rowsTotal, columnsTotal, down, right, true, 0);
+        simulation.shift(down, right);
+        geometryVersion++;
     }
 
+    // Moves the pattern to the middle of the board
+    public void centrePattern () {
+        int[] shift = simulation.centringShift();
+        if (shift[0] != 0 || shift[1] != 0) shiftPattern(shift[0], shift[1]);
+    }
 
     // Only getters and setters after this point //
 
+    public Simulation getSimulation() {
+        return simulation;
+    }
+
     public int getGenerationCounter() {
-        return generationCounter;
+        return simulation.getGenerationCounter();
     }
 
     public void setGenerationCounter(int generationCounter) {
-        this.generationCounter = generationCounter;
+        simulation.setGenerationCounter(generationCounter);
     }
 
     public Cell getCell (int r, int c) {
@@ -390,13 +346,21 @@ public class GameData implements Serializable {
     }
 
     public boolean isToroidal() {
-        return toroidal;
+        return simulation.isToroidal();
     }
 
     public void setToroidal(boolean toroidal) {
-        this.toroidal = toroidal;
-        // When changing toroidal it's necessary to recalculate who is neighbours with who
-        giveNeighbourIndexesToCells();
+        simulation.setToroidal(toroidal);
+    }
+
+    public boolean isInfinite() {
+        return simulation.isInfinite();
+    }
+
+    // Switching on starts the infinite plane off with whatever is on the grid. Switching off keeps only what is
+    // in the window.
+    public void setInfinite(boolean infinite) {
+        simulation.setInfinite(infinite);
     }
 
     public int getRowsTotal() {
@@ -415,24 +379,41 @@ public class GameData implements Serializable {
         this.columnsTotal = columnsTotal;
     }
 
-    public static List<Integer> getNeed2Survive() {
-        return need2Survive;
+    public Rule getRule() {
+        return simulation.getRule();
+    }
+
+    public void setRule(Rule rule) {
+        simulation.setRule(rule);
+    }
+
+    public long getStepPasses() {
+        return simulation.getStepPasses();
     }
 
-    public static void setNeed2Survive(List<Integer> need2Survive) {
-        GameData.need2Survive = need2Survive;
+    public int getParallelism() {
+        return simulation.getParallelism();
     }
 
-    public static List<Integer> getNeed2BeBorn() {
-        return need2BeBorn;
+    // ParallelStepper runs on a ForkJoinPool, which Android only has from Lollipop on. Older devices stay on one
+    // thread. The game itself keeps to one anyway, see GameScreen.onCreate().
+    public void setParallelism(int parallelism) {
+        if (parallelism > 1 && Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) parallelism = 1;
+        simulation.setParallelism(parallelism);
     }
 
-    public static void setNeed2BeBorn(List<Integer> need2BeBorn) {
-        GameData.need2BeBorn = need2BeBorn;
+    public boolean isIncrementalStepping() {
+        return simulation.isIncrementalStepping();
+    }
+
+    public void setIncrementalStepping(boolean incrementalStepping) {
+        simulation.setIncrementalStepping(incrementalStepping);
     }
 
     public void setDBH (DatabaseHelper dbh) { this.dbh = dbh; }
 
+    public DatabaseHelper getDBH () { return dbh; }
+
     public void setLastID (String id) { lastID = id; }
 
     public String getLastID () { return lastID; }
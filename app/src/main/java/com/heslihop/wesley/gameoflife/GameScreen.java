@@ -26,6 +26,8 @@ import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.SeekBar;
 import android.widget.TextView;
+import android.widget.Toast;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -40,14 +42,19 @@ public class GameScreen extends AppCompatActivity implements SeekBar.OnSeekBarCh
     GameData gd;
     DatabaseHelper dbh; // used for storing and retrieving data from the database.
 
-    private boolean paused = false, GUIHidden = false;
+    private boolean paused = false, GUIHidden = false, pauseWhenSettled = false;
     private ImageButton advanceOneButton, randomButton, clearButton;
     private ImageButton settingsButton, saveButton, pauseButton, redoButton;
     private ImageView backgroundIV;
-    private SeekBar speedSeekBar, sizeSeekBar;
+    private SeekBar speedSeekBar, sizeSeekBar, timelineSeekBar;
+    private boolean scrubbing = false; // Whether the user has hold of timelineSeekBar
     private TextView speedTextView, sizeTextView, generationCounter;
     private int currentGenPerSec = 10; // Current Generations-per-seconds value.
-    private View[] HIDEABLE_VIEWS = new View [12];
+    // Cells along the short side of the screen for each sizeSeekBar setting. 15 is the initial value.
+    // The big ones only make sense now that the board is tiled and empty areas cost nothing.
+    private static final int[] SHORT_SIDE_SIZES = {7, 11, 15, 22, 30, 45, 60, 90, 128};
+    private static final int MENU_REQUEST = 1; // startActivityForResult() code for MainMenu
+    private View[] HIDEABLE_VIEWS = new View [13];
     private static final String[] BACKGROUND_IMAGE_LIST = {"bacteria_811861_960_720", "microbial_handprint",
                 "drew_hays_206414_unsplash", "tiphaine_27140_unsplash", "salmonella_549608_960_720",
                 "koli_bacteria_123081_960_720"};
@@ -74,6 +81,8 @@ public class GameScreen extends AppCompatActivity implements SeekBar.OnSeekBarCh
 
         gd = GameData.getInstance();
         gd.setDBH(dbh);
+        // No parallel stepping. The boards here are all far too small for it to pay, see ParallelStepper.
+        gd.setParallelism(1);
         speedTextView = (TextView) findViewById(R.id.speed);
         sizeTextView = (TextView) findViewById(R.id.size);
         generationCounter = (TextView) findViewById(R.id.GenerationCount);
@@ -88,6 +97,8 @@ public class GameScreen extends AppCompatActivity implements SeekBar.OnSeekBarCh
         speedSeekBar.setOnSeekBarChangeListener(this);
         sizeSeekBar = (SeekBar) findViewById(R.id.sizeSeekBar);
         sizeSeekBar.setOnSeekBarChangeListener(this);
+        timelineSeekBar = (SeekBar) findViewById(R.id.timelineSeekBar);
+        timelineSeekBar.setOnSeekBarChangeListener(this);
 
         // This is so primitive. "How to program like a neanderthal 101"
         HIDEABLE_VIEWS[0] = randomButton;
@@ -102,6 +113,7 @@ public class GameScreen extends AppCompatActivity implements SeekBar.OnSeekBarCh
         HIDEABLE_VIEWS[9] = sizeTextView;
         HIDEABLE_VIEWS[10] = generationCounter;
         HIDEABLE_VIEWS[11] = saveButton;
+        HIDEABLE_VIEWS[12] = timelineSeekBar;
 
         // Restore instance state after screen rotation
         if (savedInstanceState != null) {
@@ -134,6 +146,15 @@ public class GameScreen extends AppCompatActivity implements SeekBar.OnSeekBarCh
         Log.d("Activity", "onPause() called");
         super.onPause();
         animationSV.pause();
+        // The frame timing histogram, for looking into stutter while developing. Not worth logcat's space otherwise.
+        if (BuildConfig.DEBUG) Log.d("Frames", animationSV.getFrameStats().toString());
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // i.e. on rotation, the new GameScreen gets a new AnimationSurfaceView
+        animationSV.shutDown();
     }
 
     @Override
@@ -156,12 +177,27 @@ public class GameScreen extends AppCompatActivity implements SeekBar.OnSeekBarCh
         Log.d("Toroidal is", isToroidal + "");
         gd.setToroidal(isToroidal);
 
+        boolean isInfinite = SP.getBoolean("pref_infinite", false);
+        gd.setInfinite(isInfinite);
+
+        // Stored as a string as it comes from a ListPreference
+        int turbo = Integer.parseInt(SP.getString("pref_turbo", "1"));
+        animationSV.setTurbo(turbo);
+        if (turbo == 1) speedTextView.setText(R.string.speed); // Back to the plain label
+
+        pauseWhenSettled = SP.getBoolean("pref_pause_when_settled", false);
+
         boolean isNextGenVisible = SP.getBoolean("pref_next_gen", false);
         animationSV.setShowNextGen(isNextGenVisible);
 
         boolean markForDeath = SP.getBoolean("pref_mark_for_death", false);
         animationSV.setMarkCellsForDeath(markForDeath);
 
+        gd.setColourByAge(SP.getBoolean("pref_colour_by_age", true));
+
+        animationSV.setRasterThreshold(Integer.parseInt(SP.getString("pref_fast_drawing",
+                String.valueOf(AnimationSurfaceView.DEFAULT_RASTER_THRESHOLD))));
+
         Set<String> prefCreationValues = new HashSet<String>();
         prefCreationValues.add("3");
         prefCreationValues = SP.getStringSet("prefs_creation_rules", prefCreationValues);
@@ -170,7 +206,6 @@ public class GameScreen extends AppCompatActivity implements SeekBar.OnSeekBarCh
         for (String s : prefCreationValues) {
             need2BeBorn.add(Integer.parseInt(s));
         }
-        gd.setNeed2BeBorn(need2BeBorn);
 
         Set<String> prefSurvivalValues = new HashSet<String>();
         prefSurvivalValues.add("2"); prefSurvivalValues.add("3");
@@ -180,7 +215,9 @@ public class GameScreen extends AppCompatActivity implements SeekBar.OnSeekBarCh
         for (String s : prefSurvivalValues) {
             need2Survive.add(Integer.parseInt(s));
         }
-        gd.setNeed2Survive(need2Survive);
+
+        // Compiled once here rather than looked up every generation
+        gd.setRule(Rule.fromCounts(need2BeBorn, need2Survive));
     }
 
     // This is setup to receive messages from AnimationSurfaceView
@@ -189,14 +226,34 @@ public class GameScreen extends AppCompatActivity implements SeekBar.OnSeekBarCh
     public Handler _handler = new Handler(Looper.getMainLooper()) {
         @Override
         public void handleMessage(Message msg) {
+            if (msg.what == AnimationSurfaceView.MSG_EXPORTED) {
+                statsExported(msg.arg1 == 1, (File) msg.obj);
+                return;
+            }
             if (msg.arg2 < 0) {
                 changeBackground();
             }
-            setGenerationText(gd.getGenerationCounter());
+            setGenerationText(msg.arg1); // The generation actually on screen
+            refreshTimelineBar(msg.arg1);
+            if (animationSV.isTurbo()) setMeasuredSpeedText(animationSV.getMeasuredGPS());
+            if (msg.what == AnimationSurfaceView.MSG_SETTLED) settled((Integer) msg.obj);
+            if (msg.what == AnimationSurfaceView.MSG_LOADED) refreshSizeBar();
             super.handleMessage(msg);
         }
     };
 
+    // The board has stopped changing or keeps repeating the same few generations. Nothing more to see.
+    private void settled (int period) {
+        if (!pauseWhenSettled || paused) return;
+        pauseButton(pauseButton);
+        Toast.makeText(this, getResources().getString(R.string.settled_down, period), Toast.LENGTH_SHORT).show();
+    }
+
+    private void statsExported (boolean saved, File file) {
+        if (saved) Toast.makeText(this, getResources().getString(R.string.stats_exported, file.getAbsolutePath()), Toast.LENGTH_LONG).show();
+        else Toast.makeText(this, getResources().getString(R.string.stats_export_failed), Toast.LENGTH_LONG).show();
+    }
+
     private void changeBackground() {
         fadeInAndOut(backgroundIV, 2000);
     }
@@ -255,7 +312,7 @@ public class GameScreen extends AppCompatActivity implements SeekBar.OnSeekBarCh
         }
 
         Intent i = new Intent (this, MainMenu.class);
-        startActivity (i);
+        startActivityForResult (i, MENU_REQUEST);
 
         refreshSizeBar ();
 
@@ -263,60 +320,42 @@ public class GameScreen extends AppCompatActivity implements SeekBar.OnSeekBarCh
             pauseButton(v);
         }
     }
+    // Whatever was picked in the menu to do to the board. The drawing thread does it between generations.
+    @Override
+    protected void onActivityResult (int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode != MENU_REQUEST || resultCode != RESULT_OK || data == null) return;
+
+        String action = data.getStringExtra(MainMenu.EXTRA_ACTION);
+        if (MainMenu.ACTION_CENTRE.equals(action)) animationSV.centrePattern();
+        else if (MainMenu.ACTION_MIRROR.equals(action)) animationSV.mirrorPattern();
+        else if (MainMenu.ACTION_SHIFT.equals(action)) {
+            animationSV.shiftPattern(data.getIntExtra(MainMenu.EXTRA_DOWN, 0), data.getIntExtra(MainMenu.EXTRA_RIGHT, 0));
+        }
+        else if (MainMenu.ACTION_EXPORT.equals(action)) {
+            animationSV.exportStats(new File(data.getStringExtra(MainMenu.EXTRA_FILE)));
+        }
+    }
+
     public void advanceOneButton(View v) {
-        animationSV.advanceOneGen();
+        animationSV.advanceOneStep();
     }
 
+    // Goes back to the last state loaded. The drawing thread does the loading, between generations, and lets us
+    // know (MSG_LOADED) so the size bar can catch up.
     public void redoButton (View v) {
-        boolean wasPaused = false;
-        if (!paused) {
-            pauseButton(v);
-        } else {
-            wasPaused = true;
-        }
-
-        dbh.getData("0");
-        // Causes neighbourships and nextGen to be recalculated before redrawing (maybe) ((definitely))
-        animationSV.cellsHaveChanged = true;
-        refreshSizeBar ();
-
-        if (!wasPaused) {
-            pauseButton(v);
-        } else {
-            animationSV.redrawButDontAdvanceGen();
-        }
+        animationSV.load("0");
     }
 
     public void clearButton(View v) {
-        gd.shutDownTheMatrixAndKillAllCells();
-        if (paused) {
-            // The extra calls to advanceOneGen here is a workaround for a bug. When the screen was cleared while paused,
-            // and then play pressed before drawing any cells manually, the old configuration of cells would flash briefly
-            // on the screen. The solution isn't pretty, but it does work.
-            for (int i = 0; i < 3; i++) {
-                animationSV.advanceOneGen();
-            }
-        }
+        animationSV.clear();
     }
 
     public void randomizeButton(View v) {
-        boolean wasPaused = false;
-        if (!paused) {
-            pauseButton(v);
-        } else {
-            wasPaused = true;
-        }
-
-        gd.randomize(0.3F);
-
-        if (!wasPaused) {
-            pauseButton(v);
-        } else {
-            animationSV.advanceOneGen();
-        }
+        animationSV.randomize(0.3F);
     }
 
-    // Handles both the speed and size seekbar input
+    // Handles the speed, size and timeline seekbar input
     @Override
     public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
         // Handles speedSeekBar changes
@@ -333,53 +372,43 @@ public class GameScreen extends AppCompatActivity implements SeekBar.OnSeekBarCh
         }
         // Handles sizeSeekBar changes
         else if (seekBar == findViewById(R.id.sizeSeekBar) && fromUser) {
-            boolean wasPaused = true;
-            if (!paused) {
-                wasPaused = false;
-                animationSV.pause();
-            }
-            // shortSide is the number of cells along the short side of the screen
-            int shortSide;
-            switch (progress) {
-                case 0:
-                    shortSide = 7;
-                    break;
-                case 1:
-                    shortSide = 11;
-                    break;
-                case 2:
-                    shortSide = 15; // initial value
-                    break;
-                case 3:
-                    shortSide = 22;
-                    break;
-                default:
-                    shortSide = 30;
-            }
-            // shortSide could be columns or rows depending on screen orientation.
-            // Finds out which and calculates number of cells on long side based on current ratio.
-            if (animationSV.maxX > animationSV.maxY) { // horizontal mode
-                gd.resizePetriDish(shortSide, shortSide * animationSV.maxX / animationSV.maxY);
-            } else { // portrait mode
-                gd.resizePetriDish(shortSide * animationSV.maxY / animationSV.maxX, shortSide);
-            }
-
-            gd.resetCellCoordinates(animationSV.maxX, animationSV.maxY);
-
-            // Refresh screen to reflect change if wasPaused. (If not it will refresh with next gen anyway)
-            if (wasPaused) animationSV.redrawButDontAdvanceGen();
-            else animationSV.resume();
+            // shortSide is the number of cells along the short side of the screen. The drawing thread works out
+            // the long side and redraws, running or not.
+            animationSV.resize(SHORT_SIDE_SIZES[Math.min(progress, SHORT_SIDE_SIZES.length - 1)]);
+        }
+        // Handles timelineSeekBar changes. Progress counts from the oldest generation the timeline holds.
+        else if (seekBar == findViewById(R.id.timelineSeekBar) && fromUser) {
+            animationSV.rewindTo(animationSV.getTimelineOldest() + progress);
         }
     }
 
     @Override
     public void onStartTrackingTouch(SeekBar seekBar) {
-
+        // Scrubbing through generations while they're still being added makes no sense
+        if (seekBar == timelineSeekBar) {
+            scrubbing = true;
+            if (!paused) pauseButton(pauseButton);
+        }
     }
 
     @Override
     public void onStopTrackingTouch(SeekBar seekBar) {
+        if (seekBar == timelineSeekBar) scrubbing = false;
+    }
 
+    // Stretches timelineSeekBar over the generations that can be rewound to, with the thumb on the one shown.
+    // Left alone while the user is dragging it.
+    private void refreshTimelineBar (int shownGeneration) {
+        if (scrubbing) return;
+        int oldest = animationSV.getTimelineOldest(), newest = animationSV.getTimelineNewest();
+        if (oldest < 0) { // Nothing held, i.e. in infinite mode or right after a new pattern
+            timelineSeekBar.setEnabled(false);
+            timelineSeekBar.setMax(0);
+            return;
+        }
+        timelineSeekBar.setEnabled(true);
+        timelineSeekBar.setMax(newest - oldest);
+        timelineSeekBar.setProgress(shownGeneration - oldest);
     }
 
     public void showHideGUI(View v) {
@@ -458,6 +487,11 @@ public class GameScreen extends AppCompatActivity implements SeekBar.OnSeekBarCh
         speedTextView.setText(getResources().getString(R.string.speed) + "  " + currentGenPerSec + "  " + getResources().getString(R.string.genpersec));
     }
 
+    // In turbo mode the speed shown is the real one, not what the seekbar is set to
+    public void setMeasuredSpeedText (int gps) {
+        speedTextView.setText(getResources().getString(R.string.speed) + "  " + gps + "  " + getResources().getString(R.string.genpersec));
+    }
+
     public void setGenerationText (int count) {
         generationCounter.setText (getResources().getString(R.string.generations) + "  " + count);
     }
@@ -468,23 +502,9 @@ public class GameScreen extends AppCompatActivity implements SeekBar.OnSeekBarCh
         int rows = gd.getRowsTotal();
         int cols = gd.getColumnsTotal();
         int shortSide = (rows<cols) ? rows : cols;
-        int setting;
-        switch (shortSide) {
-            case 7:
-                setting = 0;
-                break;
-            case 11:
-                setting = 1;
-                break;
-            case 15:
-                setting = 2; // initial value
-                break;
-            case 22:
-                setting = 3;
-                break;
-            default:
-                setting = 4;
-        }
+        // Closest size that isn't smaller, or the biggest one
+        int setting = 0;
+        while (setting < SHORT_SIDE_SIZES.length - 1 && SHORT_SIDE_SIZES[setting] < shortSide) setting++;
         sizeSeekBar.setProgress(setting);
     }
 
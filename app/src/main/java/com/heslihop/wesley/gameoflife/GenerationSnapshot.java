@@ -0,0 +1,53 @@
+package com.heslihop.wesley.gameoflife;
+
+/* A finished generation, copied out of GameData so it can be drawn while the simulation carries on working out the
+ * next ones. Holds the current board, the one after it (for showNextGen and markCellsForDeath) and which generation
+ * it is. SimulationThread keeps three of these and passes them around, so they are reused rather than allocated
+ * every generation.
+ */
+
+public class GenerationSnapshot {
+    final BitBoard board, nextBoard;
+    int generation;
+    int cyclePeriod; // See GameData.getCyclePeriod()
+    int oldestGeneration, newestGeneration; // What the timeline holds to rewind to, both -1 for nothing
+    long frameTime; // The vsync it was worked out for (see FramePacer), in Clock nanoseconds
+
+    GenerationSnapshot (int rows, int cols) {
+        board = new BitBoard(rows, cols);
+        nextBoard = new BitBoard(rows, cols);
+    }
+
+    // Whether this snapshot can hold a board of the given size
+    boolean fits (int rows, int cols) {
+        return board.rows == rows && board.cols == cols;
+    }
+
+    // Copies the state of gd. The caller must hold the GameData lock and have made sure nextBoard is current.
+    void copyFrom (GameData gd) {
+        board.copyFrom(gd.simulation.getBoard());
+        nextBoard.copyFrom(gd.simulation.getNextBoard());
+        generation = gd.getGenerationCounter();
+        cyclePeriod = gd.getCyclePeriod();
+        Timeline timeline = gd.simulation.getTimeline();
+        boolean held = timeline != null && !timeline.isEmpty();
+        oldestGeneration = held ? timeline.getOldestGeneration() : -1;
+        newestGeneration = held ? timeline.getNewestGeneration() : -1;
+    }
+
+    public int getGeneration () {
+        return generation;
+    }
+
+    public int getCyclePeriod () {
+        return cyclePeriod;
+    }
+
+    public int getOldestGeneration () {
+        return oldestGeneration;
+    }
+
+    public int getNewestGeneration () {
+        return newestGeneration;
+    }
+}
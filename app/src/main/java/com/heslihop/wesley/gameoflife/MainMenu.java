@@ -1,11 +1,19 @@
 package com.heslihop.wesley.gameoflife;
 
+import android.content.DialogInterface;
 import android.content.Intent;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.view.ContextThemeWrapper;
 import android.view.View;
+import java.io.File;
 
 public class MainMenu extends AppCompatActivity {
+    // What the menu hands back to GameScreen to have done to the board: EXTRA_ACTION is one of the ACTION_s,
+    // EXTRA_DOWN and EXTRA_RIGHT go with ACTION_SHIFT and EXTRA_FILE with ACTION_EXPORT
+    static final String EXTRA_ACTION = "action", EXTRA_DOWN = "down", EXTRA_RIGHT = "right", EXTRA_FILE = "file";
+    static final String ACTION_CENTRE = "centre", ACTION_MIRROR = "mirror", ACTION_SHIFT = "shift", ACTION_EXPORT = "export";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -34,6 +42,52 @@ public class MainMenu extends AppCompatActivity {
         startActivity(i);
     }
 
+    // Saves population, births and deaths of the recent generations as a CSV file in the app's folder on the
+    // device storage, where it can be copied off with a USB cable. GameScreen has it done between generations
+    // and says where it went.
+    public void exportStats (View v) {
+        File dir = getExternalFilesDir(null);
+        if (dir == null) dir = getFilesDir(); // No external storage available
+        backToGame(new Intent().putExtra(EXTRA_ACTION, ACTION_EXPORT)
+                .putExtra(EXTRA_FILE, new File(dir, "statistics.csv").getAbsolutePath()));
+    }
+
+    // Moves the pattern to the middle of the board and goes back to the game
+    public void centrePattern (View v) {
+        backToGame(new Intent().putExtra(EXTRA_ACTION, ACTION_CENTRE));
+    }
+
+    // Flips the pattern left to right and goes back to the game
+    public void mirrorPattern (View v) {
+        backToGame(new Intent().putExtra(EXTRA_ACTION, ACTION_MIRROR));
+    }
+
+    // Asks which way, then moves the pattern an eighth of the board that way (wrapping round on a toroidal board)
+    // and goes back to the game
+    public void shiftPattern (View v) {
+        String[] directions = {getResources().getString(R.string.shift_up), getResources().getString(R.string.shift_down),
+                getResources().getString(R.string.shift_left), getResources().getString(R.string.shift_right)};
+        ContextThemeWrapper ctw = new ContextThemeWrapper(this, R.style.AlertDialogTheme);
+
+        new AlertDialog.Builder(ctw)
+                .setTitle(getResources().getString(R.string.shift_pattern))
+                .setItems(directions, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                int[][] eighths = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}}; // {down, right} for each direction
+                backToGame(new Intent().putExtra(EXTRA_ACTION, ACTION_SHIFT)
+                        .putExtra(EXTRA_DOWN, eighths[which][0]).putExtra(EXTRA_RIGHT, eighths[which][1]));
+            }
+        }).show();
+    }
+
+    // The board belongs to GameScreen's drawing thread, so changes to it go back there to be carried out (see
+    // GameScreen.onActivityResult()) rather than being made from here
+    private void backToGame (Intent action) {
+        setResult(RESULT_OK, action);
+        finish();
+    }
+
     public void doYouEvenCode (View v) {
         Intent i = new Intent(this, DoYouEvenCode.class);
         startActivity(i);
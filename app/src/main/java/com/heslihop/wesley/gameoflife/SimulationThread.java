@@ -0,0 +1,257 @@
+package com.heslihop.wesley.gameoflife;
+
+/* Runs the game on its own thread, apart from the drawing. It works out generations at the requested speed and
+ * after each one hands a copy of it over (see GenerationSnapshot). AnimationSurfaceView simply draws whichever
+ * generation finished last, so the time a frame takes to draw no longer slows the game down, and when the game
+ * runs faster than the screen the generations in between are never drawn at all.
+ *
+ * The speed is kept by the display: VsyncScheduler ticks this thread on every vsync that has generations due (see
+ * FramePacer), and in between it waits. The thread lives as long as the view does, stopping the game only stops
+ * the ticks.
+ *
+ * In turbo mode (generationsPerStep above 1) each step jumps that many generations, with HashLife where it can,
+ * and only the last one is handed over. Nobody was going to see the ones in between anyway.
+ *
+ * The snapshots are triple buffered: the simulation fills 'back', the drawing thread draws 'front', and 'latest'
+ * is the newest finished one waiting to be picked up. Handing one over is just a swap of two references.
+ *
+ * Anything that changes GameData while the simulation is running must synchronize on the GameData instance, the
+ * same as step() does.
+ */
+
+public class SimulationThread implements Runnable {
+    private final GameData gd;
+    private Thread thread;
+    private volatile boolean running = false, alive = true;
+    private volatile int generationsPerStep = 1;
+    private final Clock clock;
+    private final FramePacer pacer;
+    private final VsyncScheduler scheduler;
+    // Steps VsyncScheduler has asked for that haven't been made yet, and the vsync they're for. Guarded by 'ticks'.
+    private int pendingSteps = 0;
+    private long pendingFrameTime;
+    // Whether this thread is in the middle of ticked steps, for stop() to wait on. Guarded by 'ticks' too.
+    private boolean stepping = false;
+    private final Object ticks = new Object();
+    // How many generations per second are really being worked out, measured over about a second
+    private volatile int measuredGPS = 0;
+    private long measureStart;
+    private int measuredGenerations;
+
+    private GenerationSnapshot back, latest, front;
+    private boolean fresh = false; // Whether latest holds a generation the drawing thread hasn't had yet
+    private boolean woken = false; // Whether wake() was called since the last takeLatest()
+    private final Object handOver = new Object();
+
+    public SimulationThread (GameData gd) {
+        this(gd, Clock.SYSTEM);
+    }
+
+    public SimulationThread (GameData gd, Clock clock) {
+        this.gd = gd;
+        this.clock = clock;
+        pacer = new FramePacer(clock);
+        pacer.setStepsPerSecond(10); // Steps per second. Generations per second unless in turbo mode.
+        scheduler = new VsyncScheduler(pacer, this);
+    }
+
+    // Gets the game going. The thread is started the first time and after that just waits while stopped.
+    public void start () {
+        if (running) return;
+        running = true;
+        measureStart = clock.nanoTime();
+        measuredGenerations = 0;
+        synchronized (ticks) {
+            pendingSteps = 0;
+        }
+        if (thread == null) {
+            thread = new Thread(this, "Simulation");
+            thread.start();
+        }
+        scheduler.start();
+    }
+
+    // Stops the game. Once this returns no more generations will be worked out until start() is called again, a
+    // step that was already under way is waited for. run() only takes on steps while running, and says when it's
+    // done with them, both under 'ticks', so nothing can slip in between.
+    public void stop () {
+        scheduler.stop();
+        synchronized (ticks) {
+            running = false;
+            pendingSteps = 0;
+            while (stepping) {
+                try {
+                    ticks.wait();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // Ends the thread for good
+    public void shutDown () {
+        stop();
+        alive = false;
+        synchronized (ticks) {
+            ticks.notifyAll();
+        }
+    }
+
+    @Override
+    public void run () {
+        while (alive) {
+            int steps;
+            long frameTime;
+            synchronized (ticks) {
+                if (pendingSteps == 0 || !running) {
+                    try {
+                        ticks.wait();
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                    continue;
+                }
+                // If stepping fell behind, everything owed is done in one go and only the last one is shown
+                steps = pendingSteps;
+                frameTime = pendingFrameTime;
+                pendingSteps = 0;
+                stepping = true;
+            }
+
+            int generations = steps * generationsPerStep;
+            try {
+                step(generations, frameTime);
+                measure(generations);
+            } finally {
+                synchronized (ticks) {
+                    stepping = false;
+                    ticks.notifyAll(); // stop() may be waiting
+                }
+            }
+        }
+    }
+
+    // Called by VsyncScheduler when steps are due for the vsync at frameTimeNanos
+    void tick (int steps, long frameTimeNanos) {
+        synchronized (ticks) {
+            pendingSteps += steps;
+            pendingFrameTime = frameTimeNanos;
+            ticks.notifyAll();
+        }
+    }
+
+    // Advances the given number of generations and hands over the last one. Also used directly (not on this
+    // thread) for single steps while the game is paused.
+    public void step (int generations) {
+        step(generations, clock.nanoTime());
+    }
+
+    private void step (int generations, long frameTime) {
+        synchronized (gd) {
+            gd.applyEdits(); // Anything drawn in goes into this step
+            if (generations == 1) gd.advanceGenerationUsingNextGen();
+            else gd.jumpGenerations(generations);
+            publishLocked(frameTime);
+        }
+    }
+
+    private void measure (int generations) {
+        measuredGenerations += generations;
+        long now = clock.nanoTime();
+        if (now - measureStart >= 1000000000L) {
+            measuredGPS = (int) (measuredGenerations * 1000000000L / (now - measureStart));
+            measureStart = now;
+            measuredGenerations = 0;
+        }
+    }
+
+    // Hands over the current generation without advancing, i.e. after cells were drawn in or the board changed.
+    public void publish () {
+        synchronized (gd) {
+            publishLocked(clock.nanoTime());
+        }
+    }
+
+    // frameTime is the vsync the generation is meant for, or just now if it wasn't asked for by one
+    private void publishLocked (long frameTime) {
+        // Each generation is only ever calculated once. This one goes out with the snapshot and then becomes the
+        // current one on the next step.
+        gd.ensureNextGen();
+
+        if (back == null || !back.fits(gd.rowsTotal, gd.columnsTotal)) {
+            back = new GenerationSnapshot(gd.rowsTotal, gd.columnsTotal);
+        }
+        back.copyFrom(gd);
+        back.frameTime = frameTime;
+
+        synchronized (handOver) {
+            GenerationSnapshot temp = latest;
+            latest = back;
+            back = temp;
+            fresh = true;
+            handOver.notifyAll();
+        }
+    }
+
+    // Gives the drawing thread the newest generation, waiting up to maxWait milliseconds for one to be finished.
+    // Returns null if nothing new came along in that time, or wake() was called. The snapshot returned is the
+    // caller's until the next call, the simulation won't touch it.
+    public GenerationSnapshot takeLatest (long maxWait) {
+        synchronized (handOver) {
+            if (!fresh && !woken && maxWait > 0) {
+                try {
+                    handOver.wait(maxWait);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+            woken = false;
+            if (!fresh) return null;
+
+            GenerationSnapshot temp = front;
+            front = latest;
+            latest = temp;
+            fresh = false;
+            return front;
+        }
+    }
+
+    // Cuts a wait in takeLatest() short (or the next one, if nobody is waiting), i.e. when the drawing thread has
+    // been given something else to do
+    public void wake () {
+        synchronized (handOver) {
+            woken = true;
+            handOver.notifyAll();
+        }
+    }
+
+    public boolean isRunning () {
+        return running;
+    }
+
+    public void setGPS (int gps) {
+        pacer.setStepsPerSecond(gps);
+    }
+
+    // Call once the snapshot is on its way to the screen, to time the frame. See FramePacer.frameDrawn().
+    public void frameDrawn (GenerationSnapshot snapshot) {
+        pacer.frameDrawn(snapshot.frameTime);
+    }
+
+    public FrameStats getFrameStats () {
+        return pacer.getStats();
+    }
+
+    public int getGenerationsPerStep () {
+        return generationsPerStep;
+    }
+
+    public void setGenerationsPerStep (int generationsPerStep) {
+        this.generationsPerStep = Math.max(1, generationsPerStep);
+    }
+
+    public int getMeasuredGPS () {
+        return measuredGPS;
+    }
+}
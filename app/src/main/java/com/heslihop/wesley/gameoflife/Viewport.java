@@ -0,0 +1,143 @@
+package com.heslihop.wesley.gameoflife;
+
+/* Which part of the board is on screen, and how big it is. At zoom 1 the whole board fills the screen, as it always
+ * has. Zooming in makes the cells bigger and shows only part of the board, which can then be panned around.
+ *
+ * Everything that needs to go between board (rows and columns) and screen (pixels) goes through here: drawing,
+ * touches, and the dirty region. So cells don't need to remember where they are on screen, and drawing only has to
+ * go through the rows and columns that are visible.
+ *
+ * Changed from the UI thread by gestures while the drawing thread reads it, so everything is synchronized. The
+ * drawing thread takes a copy once a frame (see copyFrom()) so the whole frame uses the same view.
+ */
+
+public class Viewport {
+    static final float MAX_ZOOM = 16f;
+
+    private int screenWidth, screenHeight, rows = 1, cols = 1;
+    private float zoom = 1;
+    private float left = 0, top = 0; // The board position, in cells, at the top left corner of the screen
+    private float cellWidth, cellHeight; // In pixels, at the current zoom
+    // Goes up with any change, so the drawing side knows to draw everything again
+    private int version = 0;
+
+    // The size of the drawing area and of the board. Keeps the zoom, and whatever was in the middle of the screen
+    // as close to it as the new board allows.
+    public synchronized void setSize (int screenWidth, int screenHeight, int rows, int cols) {
+        float middleCol = left + this.cols / zoom / 2, middleRow = top + this.rows / zoom / 2;
+        // Where that is on the new board, which grows or shrinks around its centre (see GameData.resizePetriDish())
+        middleCol += (cols - this.cols) / 2;
+        middleRow += (rows - this.rows) / 2;
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        this.rows = rows;
+        this.cols = cols;
+        left = middleCol - cols / zoom / 2;
+        top = middleRow - rows / zoom / 2;
+        update();
+    }
+
+    // Zooms by 'factor' (more than 1 is in), keeping the bit of the board under the focus point where it is
+    public synchronized void zoomBy (float factor, float focusX, float focusY) {
+        if (screenWidth == 0 || screenHeight == 0) return; // No size yet
+        float col = left + focusX / cellWidth, row = top + focusY / cellHeight;
+        zoom = Math.max(1, Math.min(MAX_ZOOM, zoom * factor));
+        cellWidth = (float) screenWidth / cols * zoom;
+        cellHeight = (float) screenHeight / rows * zoom;
+        left = col - focusX / cellWidth;
+        top = row - focusY / cellHeight;
+        update();
+    }
+
+    // Moves the board by the given number of pixels, i.e. the distance a finger moved
+    public synchronized void panBy (float dx, float dy) {
+        if (screenWidth == 0 || screenHeight == 0) return;
+        left -= dx / cellWidth;
+        top -= dy / cellHeight;
+        update();
+    }
+
+    // Works out the cell size and keeps the view on the board
+    private void update () {
+        cellWidth = (float) screenWidth / cols * zoom;
+        cellHeight = (float) screenHeight / rows * zoom;
+        left = Math.max(0, Math.min(cols - cols / zoom, left));
+        top = Math.max(0, Math.min(rows - rows / zoom, top));
+        version++;
+    }
+
+    public synchronized void copyFrom (Viewport other) {
+        synchronized (other) {
+            screenWidth = other.screenWidth;
+            screenHeight = other.screenHeight;
+            rows = other.rows;
+            cols = other.cols;
+            zoom = other.zoom;
+            left = other.left;
+            top = other.top;
+            cellWidth = other.cellWidth;
+            cellHeight = other.cellHeight;
+            version = other.version;
+        }
+    }
+
+    // Where the left edge of a column is on screen
+    public synchronized float columnToX (float col) {
+        return (col - left) * cellWidth;
+    }
+
+    public synchronized float rowToY (float row) {
+        return (row - top) * cellHeight;
+    }
+
+    // The column under an x coordinate on screen, which may be off the board if x is off the screen
+    public synchronized int columnAt (float x) {
+        return (int) Math.floor(left + x / cellWidth);
+    }
+
+    public synchronized int rowAt (float y) {
+        return (int) Math.floor(top + y / cellHeight);
+    }
+
+    // The first and last rows and columns at least partly on screen
+    public synchronized int getFirstVisibleRow () {
+        return Math.max(0, (int) top);
+    }
+
+    public synchronized int getLastVisibleRow () {
+        return Math.min(rows - 1, (int) Math.ceil(top + rows / zoom) - 1);
+    }
+
+    public synchronized int getFirstVisibleColumn () {
+        return Math.max(0, (int) left);
+    }
+
+    public synchronized int getLastVisibleColumn () {
+        return Math.min(cols - 1, (int) Math.ceil(left + cols / zoom) - 1);
+    }
+
+    public synchronized int getVisibleCells () {
+        return (getLastVisibleRow() - getFirstVisibleRow() + 1) * (getLastVisibleColumn() - getFirstVisibleColumn() + 1);
+    }
+
+    public synchronized float getCellWidth () {
+        return cellWidth;
+    }
+
+    public synchronized float getCellHeight () {
+        return cellHeight;
+    }
+
+    // How big a cell's circle is drawn
+    public synchronized int getCellRadius () {
+        return (int) (cellWidth * 0.4);
+    }
+
+    public synchronized float getZoom () {
+        return zoom;
+    }
+
+    public synchronized int getVersion () {
+        return version;
+    }
+}
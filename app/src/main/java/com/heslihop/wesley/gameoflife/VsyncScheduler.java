@@ -0,0 +1,56 @@
+package com.heslihop.wesley.gameoflife;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/* Ticks SimulationThread along with the display. Choreographer calls back once per vsync with the time the frame
+ * started, FramePacer turns that into how many generations are due, and the simulation thread is woken up to work
+ * them out. Generations then land on frame boundaries instead of whenever a sleep happened to end.
+ *
+ * Choreographer only works on a thread with a Looper, so the callbacks are posted to the main thread. They don't
+ * do anything there but a little arithmetic and a notify.
+ */
+
+public class VsyncScheduler implements Choreographer.FrameCallback {
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final FramePacer pacer;
+    private final SimulationThread simulation;
+    private volatile boolean running = false;
+
+    public VsyncScheduler (FramePacer pacer, SimulationThread simulation) {
+        this.pacer = pacer;
+        this.simulation = simulation;
+    }
+
+    // Can be called from any thread
+    public void start () {
+        running = true;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run () {
+                Choreographer.getInstance().removeFrameCallback(VsyncScheduler.this); // In case stop() hasn't got there yet
+                pacer.restart();
+                Choreographer.getInstance().postFrameCallback(VsyncScheduler.this);
+            }
+        });
+    }
+
+    public void stop () {
+        running = false;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run () {
+                if (!running) Choreographer.getInstance().removeFrameCallback(VsyncScheduler.this);
+            }
+        });
+    }
+
+    @Override
+    public void doFrame (long frameTimeNanos) {
+        if (!running) return;
+        int steps = pacer.onFrame(frameTimeNanos);
+        if (steps > 0) simulation.tick(steps, frameTimeNanos);
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
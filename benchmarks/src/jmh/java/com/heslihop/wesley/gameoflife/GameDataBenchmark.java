@@ -0,0 +1,89 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/* Times the main GameData operations on square boards of a few sizes, densities and both edge modes.
+ *
+ * Every iteration starts from the same board: the cells are filled in from a Random with a fixed seed rather than
+ * GameData.randomize() (which uses Math.random()), so runs on different days compare like with like. That matters
+ * for the benchmarks that advance the board, as a soup changes a lot over its first few hundred generations.
+ *
+ * GameData is a singleton, so the benchmarks can't run on several threads at once. Parallel stepping is switched
+ * off too, these numbers are about a single core.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GameDataBenchmark {
+    private static final long SEED = 20180313L;
+
+    @Param({"32", "128", "512"})
+    int size;
+
+    @Param({"0.1", "0.3", "0.5"})
+    double density;
+
+    @Param({"true", "false"})
+    boolean toroidal;
+
+    GameData gd;
+
+    @Setup(Level.Trial)
+    public void makeBoard () {
+        gd = GameData.getInstance();
+        gd.setParallelism(1);
+        gd.setRowsTotal(size);
+        gd.setColumnsTotal(size);
+        gd.initializeCells();
+        gd.setToroidal(toroidal);
+    }
+
+    @Setup(Level.Iteration)
+    public void fillBoard () {
+        // Earlier benchmarks may have left it rotated or resized
+        if (gd.getRowsTotal() != size || gd.getColumnsTotal() != size) gd.resizePetriDish(size, size);
+
+        Random random = new Random(SEED);
+        for (int i = 0; i < size * size; i++) {
+            gd.setAlive(i, random.nextDouble() < density);
+        }
+        gd.setGenerationCounter(0);
+    }
+
+    // One full generation worked out into nextBoard. The board doesn't move on, so every call does the same work.
+    @Benchmark
+    public void calcNextGen () {
+        gd.calcNextGen();
+    }
+
+    // Works out the next generation and makes it the current one, i.e. what the game does once per frame
+    @Benchmark
+    public void advanceGenerationUsingNextGen () {
+        gd.advanceGenerationUsingNextGen();
+    }
+
+    // Grows the board by a cell on every side and shrinks it back, so the board is the same for the next call
+    @Benchmark
+    public void resizePetriDish () {
+        gd.resizePetriDish(size + 2, size + 2);
+        gd.resizePetriDish(size, size);
+    }
+
+    // A quarter turn each way, for the same reason
+    @Benchmark
+    public void rotatePetriDish () {
+        gd.rotatePetriDish(true);
+        gd.rotatePetriDish(false);
+    }
+}
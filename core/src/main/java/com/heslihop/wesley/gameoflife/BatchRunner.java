@@ -0,0 +1,198 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+/* Runs a pattern for a number of generations from the command line, without the app. Handy for checking long runs
+ * and for timing the engine on a machine bigger than a phone.
+ *
+ *   BatchRunner <pattern.rle|pattern.cells> <generations> [options]
+ *
+ *   --rule B3/S23     Rule to use. Defaults to the one in the pattern file, or Conway's Life.
+ *   --size 200x300    Run on a fixed board of 200 rows and 300 columns with the pattern in the middle, instead of
+ *                     the infinite plane.
+ *   --toroidal        Wrap the fixed board's edges around. Needs --size.
+ *   --jump            Let HashLife skip ahead where it can. Needs --size.
+ *   --threads 4       Step the fixed board on this many threads. Needs --size.
+ *   --out result.rle  Where the final generation goes. Standard output if left out.
+ *
+ * The timing (generations, milliseconds, generations per second, population) goes to standard error so it doesn't
+ * get mixed up with the pattern.
+ *
+ * It also runs soup searches (see SoupSearch):
+ *
+ *   BatchRunner soups <count> [--seed 1] [--density 0.5] [--rule B3/S23] [--threads 4] [--out census.csv]
+ *   BatchRunner soup <seed> [--density 0.5] [--rule B3/S23] [--out soup.rle]
+ *
+ * The first runs count soups with seeds from --seed on, on all cores unless told otherwise, and writes the census
+ * as CSV. The second writes out a single soup, i.e. one of the census' sample seeds, to be run with the normal mode.
+ */
+
+public class BatchRunner {
+
+    public static void main (String[] args) {
+        try {
+            System.exit(run(args));
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static int run (String[] args) throws IOException {
+        if (args.length > 0 && (args[0].equals("soups") || args[0].equals("soup"))) return runSoups(args);
+
+        String patternFile = null, outFile = null;
+        int generations = -1, rows = 0, cols = 0, threads = 1;
+        boolean toroidal = false, jump = false;
+        Rule rule = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--rule")) rule = Rule.parse(args[++i]);
+                else if (arg.equals("--size")) {
+                    String[] size = args[++i].toLowerCase().split("x");
+                    if (size.length != 2) return usage("--size needs rows x columns, i.e. 200x300");
+                    rows = Integer.parseInt(size[0]);
+                    cols = Integer.parseInt(size[1]);
+                }
+                else if (arg.equals("--toroidal")) toroidal = true;
+                else if (arg.equals("--jump")) jump = true;
+                else if (arg.equals("--threads")) threads = Integer.parseInt(args[++i]);
+                else if (arg.equals("--out")) outFile = args[++i];
+                else if (arg.startsWith("--")) return usage("Unknown option " + arg);
+                else if (patternFile == null) patternFile = arg;
+                else if (generations == -1) generations = Integer.parseInt(arg);
+                else return usage("Too many arguments");
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return usage("Missing value for " + args[args.length - 1]);
+        } catch (IllegalArgumentException e) { // Includes NumberFormatException
+            return usage(e.getMessage());
+        }
+        if (patternFile == null || generations < 0) return usage(null);
+        boolean infinite = rows <= 0 || cols <= 0;
+        if (infinite && (toroidal || jump || threads > 1)) return usage("--toroidal, --jump and --threads need --size");
+
+        Pattern pattern;
+        Reader in = new InputStreamReader(new FileInputStream(patternFile), "UTF-8");
+        try {
+            pattern = Pattern.read(in);
+        } finally {
+            in.close();
+        }
+        if (rule == null) rule = pattern.getRule() != null ? pattern.getRule() : Rule.CONWAY;
+
+        // On the infinite plane the board is only a window, just big enough to put the pattern in through
+        Simulation simulation;
+        if (infinite) {
+            simulation = new Simulation(Math.max(1, pattern.getHeight()), Math.max(1, pattern.getWidth()));
+            simulation.setInfinite(true);
+        }
+        else {
+            simulation = new Simulation(rows, cols);
+            simulation.setToroidal(toroidal);
+            simulation.setParallelism(threads);
+        }
+        simulation.setRule(rule);
+        pattern.drawOn(simulation, (simulation.getRows() - pattern.getHeight()) / 2,
+                (simulation.getColumns() - pattern.getWidth()) / 2);
+
+        long start = System.nanoTime();
+        try {
+            if (jump) simulation.jumpGenerations(generations);
+            else {
+                for (int i = 0; i < generations; i++) simulation.advance();
+            }
+        } finally {
+            simulation.shutdown();
+        }
+        long nanos = System.nanoTime() - start;
+
+        Pattern result = infinite ? Pattern.of(simulation.getUniverse(), rule) : Pattern.of(simulation.getBoard(), rule);
+        Writer out = new OutputStreamWriter(outFile == null ? System.out : new FileOutputStream(outFile), "UTF-8");
+        try {
+            result.writeRle(out);
+        } finally {
+            if (outFile != null) out.close();
+        }
+
+        double millis = nanos / 1e6;
+        System.err.printf("%d generations in %.1f ms (%.0f generations/s), population %d%n", generations, millis,
+                millis > 0 ? generations * 1000 / millis : 0.0, result.getPopulation());
+        return 0;
+    }
+
+    // Both soup commands. Prints how many soups a second the search managed to standard error.
+    private static int runSoups (String[] args) throws IOException {
+        boolean single = args[0].equals("soup");
+        String outFile = null;
+        long seed = 1;
+        int count = -1, threads = Runtime.getRuntime().availableProcessors();
+        double density = 0.5;
+        Rule rule = Rule.CONWAY;
+
+        try {
+            if (args.length < 2) return usage(null);
+            if (single) seed = Long.parseLong(args[1]);
+            else count = Integer.parseInt(args[1]);
+            for (int i = 2; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--rule")) rule = Rule.parse(args[++i]);
+                else if (arg.equals("--seed") && !single) seed = Long.parseLong(args[++i]);
+                else if (arg.equals("--density")) density = Double.parseDouble(args[++i]);
+                else if (arg.equals("--threads") && !single) threads = Integer.parseInt(args[++i]);
+                else if (arg.equals("--out")) outFile = args[++i];
+                else return usage("Unknown option " + arg);
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return usage("Missing value for " + args[args.length - 1]);
+        } catch (IllegalArgumentException e) { // Includes NumberFormatException
+            return usage(e.getMessage());
+        }
+        if (count < 0 && !single) return usage(null);
+
+        SoupSearch search = new SoupSearch(rule, density, threads);
+        Writer out = new OutputStreamWriter(outFile == null ? System.out : new FileOutputStream(outFile), "UTF-8");
+        try {
+            if (single) {
+                search.soup(seed).writeRle(out);
+                return 0;
+            }
+
+            long start = System.nanoTime();
+            Census census;
+            try {
+                census = search.run(seed, count);
+            } catch (InterruptedException e) {
+                return 1;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            census.writeCsv(out, rule);
+
+            System.err.printf("%d soups in %.1f s on %d threads (%.1f soups/s), %d unsettled%n", census.getSoups(),
+                    seconds, search.getThreads(), seconds > 0 ? census.getSoups() / seconds : 0.0,
+                    census.getUnsettledSeeds().size());
+            return 0;
+        } finally {
+            if (outFile != null) out.close();
+            else out.flush();
+        }
+    }
+
+    private static int usage (String problem) {
+        if (problem != null) System.err.println(problem);
+        System.err.println("Usage: BatchRunner <pattern.rle|pattern.cells> <generations> [--rule B3/S23] "
+                + "[--size ROWSxCOLUMNS] [--toroidal] [--jump] [--threads N] [--out result.rle]");
+        System.err.println("       BatchRunner soups <count> [--seed FIRST] [--density 0.5] [--rule B3/S23] "
+                + "[--threads N] [--out census.csv]");
+        System.err.println("       BatchRunner soup <seed> [--density 0.5] [--rule B3/S23] [--out soup.rle]");
+        return 2;
+    }
+}
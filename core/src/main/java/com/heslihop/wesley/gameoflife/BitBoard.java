@@ -0,0 +1,750 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/* The grid of cells packed into bits. Each row is stored as one or more 64 bit words, so a single long holds the
+ * state of 64 neighbouring cells. Stepping is done a whole word at a time by treating the eight neighbours as eight
+ * bit-planes and adding them up with bitwise full adders, which gives the neighbour count of 64 cells at once
+ * without ever looking at a single cell.
+ *
+ * Bit c of a row lives in word (c / 64), at bit position (c % 64). Bits past the last column are always kept at 0.
+ *
+ * The words are grouped into 64 x 64 cell tiles (64 rows of one word each). A tile is only allocated once something
+ * lives in it and is dropped again when everything in it has died, so big mostly empty boards cost next to nothing
+ * to store, and a step skips any tile that has nothing in or around it.
+ *
+ * Each tile also carries a 'changed' flag: whether it is different from the generation before (or was edited).
+ * A tile whose own flag and those of the eight tiles around it are all clear can't change either, so an
+ * incremental step just copies it over. With a few gliders in an otherwise settled world that skips most of it.
+ * The same flags tell anything else (drawing, saving) which parts of the board are worth looking at.
+ *
+ * Optionally (see setTrackingAges()) it also keeps how many generations each cell has been alive, a byte per cell in
+ * tiles that go with the bit tiles. Ages are worked out by the step itself, in the same loop that writes each word,
+ * and only for the bits that are set, so a settled board costs a write per live cell a generation and nothing more.
+ */
+
+public class BitBoard implements Serializable {
+    // Serializable only so the Simulation holding it can be. Saved games don't go through serialization (they
+    // keep the live states, see DatabaseHelper), the ID just keeps -Xlint:serial quiet.
+    private static final long serialVersionUID = 1L;
+
+    public static final int TILE_SIZE = 64;
+
+    final int rows, cols, wordsPerRow, tileRows;
+    // tiles[tileRow * wordsPerRow + word], null when the whole tile is dead
+    final long[][] tiles;
+    final boolean[] changed;
+    // Cells born and died in each tile by the step that produced this board. Kept per tile so stripes stepped on
+    // different threads never write to the same counter.
+    final int[] births, deaths;
+    private final long lastWordMask;
+    private int lastActiveTiles; // How many tiles the last step actually had to calculate
+    // Ages stop going up here, so they fit a byte and old enough things all look the same
+    public static final int MAX_AGE = 100;
+    // ages[i][row * 64 + bit] is the age of the cell at that bit of tiles[i]: 1 when just born, 0 when not known
+    // (switched on with cells already alive, or put back by the timeline). Only means anything where the cell is
+    // alive, the rest is left over. null when ages aren't tracked. ageing[i] is whether tile i has live cells younger
+    // than MAX_AGE, i.e. whose age will still change.
+    byte[][] ages;
+    boolean[] ageing;
+
+    public BitBoard (int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        wordsPerRow = (cols + 63) >>> 6;
+        tileRows = (rows + 63) >>> 6;
+        tiles = new long[tileRows * wordsPerRow][];
+        changed = new boolean[tiles.length];
+        births = new int[tiles.length];
+        deaths = new int[tiles.length];
+        Arrays.fill(changed, true);
+        lastWordMask = (cols & 63) == 0 ? -1L : (1L << (cols & 63)) - 1;
+    }
+
+    public boolean get (int r, int c) {
+        long[] tile = tiles[(r >>> 6) * wordsPerRow + (c >>> 6)];
+        return tile != null && (tile[r & 63] & (1L << c)) != 0;
+    }
+
+    public void set (int r, int c, boolean alive) {
+        int i = (r >>> 6) * wordsPerRow + (c >>> 6);
+        long[] tile = tiles[i];
+        if (tile == null) {
+            if (!alive) return;
+            tile = tiles[i] = new long[TILE_SIZE];
+        }
+        changed[i] = true;
+        if (alive) tile[r & 63] |= (1L << c);
+        else tile[r & 63] &= ~(1L << c);
+        if (alive && ages != null) {
+            ageTile(i)[(r & 63) << 6 | (c & 63)] = 1; // A new cell, as far as we know
+            ageing[i] = true;
+        }
+    }
+
+    // Same as above but using the flat index petriDish uses (index = row * cols + col)
+    public boolean get (int index) {
+        return get(index / cols, index % cols);
+    }
+
+    public void set (int index, boolean alive) {
+        set(index / cols, index % cols, alive);
+    }
+
+    public void clear () {
+        Arrays.fill(tiles, null);
+        markAllChanged();
+    }
+
+    // Switches keeping cells' ages on or off. When switched on every cell already alive gets an unknown age (0).
+    // Boards stepped from, or turned, resized etc. from, a board with ages get them too.
+    public void setTrackingAges (boolean on) {
+        if (on == (ages != null)) return;
+        ages = on ? new byte[tiles.length][] : null;
+        ageing = on ? new boolean[tiles.length] : null;
+        if (on) forgetAges();
+    }
+
+    public boolean isTrackingAges () {
+        return ages != null;
+    }
+
+    // Makes every age unknown, for when the cells were put there by something other than a step or set()
+    public void forgetAges () {
+        if (ages == null) return;
+        for (int i = 0; i < tiles.length; i++) {
+            if (ages[i] != null) Arrays.fill(ages[i], (byte) 0);
+            ageing[i] = tiles[i] != null;
+        }
+    }
+
+    // Ages the live cells as if 'generations' more generations of a cycle with the given period had gone by, for
+    // skipping whole periods (see Simulation.jumpGenerations()). A cell at least 'period' old has been alive right
+    // through the cycle and so stays alive, only older. A younger one dies and is born again every period, so it
+    // has the same age at this point of every one. Unknown ages stay unknown.
+    public void ageBy (int generations, int period) {
+        if (ages == null) return;
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] == null || ages[i] == null) continue;
+            byte[] tile = ages[i];
+            for (int row = 0; row < TILE_SIZE; row++) {
+                for (long word = tiles[i][row]; word != 0; word &= word - 1) {
+                    int at = row << 6 | Long.numberOfTrailingZeros(word);
+                    if (tile[at] >= period) tile[at] = (byte) Math.min(MAX_AGE, (long) tile[at] + generations);
+                }
+            }
+        }
+    }
+
+    // How many generations the cell has been alive, up to MAX_AGE. 0 if it isn't known, the cell is dead or ages
+    // aren't tracked.
+    public int getAge (int r, int c) {
+        if (!get(r, c)) return 0;
+        byte[] tile = ages == null ? null : ages[(r >>> 6) * wordsPerRow + (c >>> 6)];
+        return tile == null ? 0 : tile[(r & 63) << 6 | (c & 63)];
+    }
+
+    public int getAge (int index) {
+        return getAge(index / cols, index % cols);
+    }
+
+    // The ages of tile i, allocated if need be. Each tile's are only ever touched by whoever works on that tile.
+    private byte[] ageTile (int i) {
+        byte[] tile = ages[i];
+        if (tile == null) tile = ages[i] = new byte[TILE_SIZE * TILE_SIZE];
+        return tile;
+    }
+
+    // Writes the ages for one row of a tile: cells alive in 'after' are a generation older than 'from' says if they
+    // were alive in 'before' as well, and newborn otherwise. Returns whether any of them is still under MAX_AGE.
+    private static boolean ageRow (byte[] from, byte[] to, int row, long before, long after) {
+        boolean young = false;
+        int start = row << 6;
+        for (long word = after; word != 0; word &= word - 1) {
+            int bit = Long.numberOfTrailingZeros(word);
+            int age = from == null || (before & (1L << bit)) == 0 ? 1 : from[start + bit] + 1;
+            if (age >= MAX_AGE) age = MAX_AGE;
+            else young = true;
+            to[start + bit] = (byte) age;
+        }
+        return young;
+    }
+
+    // Brings the ages forward from 'before', the generation this board was worked out from by something other than
+    // step(), i.e. the infinite plane copied into a window. Costs a pass over the live cells that step() avoids.
+    public void ageFrom (BitBoard before) {
+        setTrackingAges(before.ages != null);
+        if (ages == null) return;
+        for (int i = 0; i < tiles.length; i++) {
+            ageing[i] = false;
+            if (tiles[i] == null) continue;
+            byte[] to = ageTile(i);
+            long[] was = before.tiles[i];
+            for (int row = 0; row < TILE_SIZE; row++) {
+                ageing[i] |= ageRow(before.ages[i], to, row, was == null ? 0 : was[row], tiles[i][row]);
+            }
+        }
+    }
+
+    // Gets 'next' ready to take this board's ages forward, before any stripes of it are stepped
+    void prepareAges (BitBoard next) {
+        next.setTrackingAges(ages != null);
+    }
+
+    // The smallest box of whole tiles around every tile whose cells' ages are still changing, in cells, as
+    // {top row, left column, bottom row, right column}. null if there aren't any or ages aren't tracked.
+    public int[] boundsOfAgeingTiles () {
+        if (ages == null) return null;
+        int minTileRow = Integer.MAX_VALUE, maxTileRow = -1, minWord = Integer.MAX_VALUE, maxWord = -1;
+        for (int i = 0; i < tiles.length; i++) {
+            if (!ageing[i] || tiles[i] == null) continue;
+            minTileRow = Math.min(minTileRow, i / wordsPerRow);
+            maxTileRow = Math.max(maxTileRow, i / wordsPerRow);
+            minWord = Math.min(minWord, i % wordsPerRow);
+            maxWord = Math.max(maxWord, i % wordsPerRow);
+        }
+        if (maxTileRow == -1) return null;
+        return new int[] {minTileRow << 6, minWord << 6, Math.min(rows, (maxTileRow + 1) << 6) - 1,
+                Math.min(cols, (maxWord + 1) << 6) - 1};
+    }
+
+    // Tiles this board already has are reused, so copying into the same board over and over (as the snapshots
+    // handed to the drawing thread are) doesn't keep allocating.
+    public void copyFrom (BitBoard other) {
+        for (int i = 0; i < tiles.length; i++) {
+            if (other.tiles[i] == null) tiles[i] = null;
+            else if (tiles[i] == null) tiles[i] = other.tiles[i].clone();
+            else System.arraycopy(other.tiles[i], 0, tiles[i], 0, TILE_SIZE);
+        }
+        setTrackingAges(other.ages != null);
+        if (ages != null) {
+            for (int i = 0; i < tiles.length; i++) {
+                if (other.tiles[i] == null || other.ages[i] == null) continue;
+                System.arraycopy(other.ages[i], 0, ageTile(i), 0, TILE_SIZE * TILE_SIZE);
+            }
+            System.arraycopy(other.ageing, 0, ageing, 0, ageing.length);
+        }
+        markAllChanged();
+    }
+
+    // Forces the next step to look at every tile. Needed whenever something other than the cells themselves
+    // changes the outcome, i.e. the rule or whether the world is toroidal.
+    public void markAllChanged () {
+        Arrays.fill(changed, true);
+    }
+
+    public int getLastActiveTiles () {
+        return lastActiveTiles;
+    }
+
+    void setLastActiveTiles (int lastActiveTiles) {
+        this.lastActiveTiles = lastActiveTiles;
+    }
+
+    public int getTileRows () {
+        return tileRows;
+    }
+
+    public int getTileColumns () {
+        return wordsPerRow;
+    }
+
+    // Whether the tile differs from the previous generation, or has been edited
+    public boolean isTileChanged (int tileRow, int tileCol) {
+        return changed[tileRow * wordsPerRow + tileCol];
+    }
+
+    public boolean isTileEmpty (int tileRow, int tileCol) {
+        return tiles[tileRow * wordsPerRow + tileCol] == null;
+    }
+
+    public int getAllocatedTiles () {
+        int count = 0;
+        for (long[] tile : tiles) {
+            if (tile != null) count++;
+        }
+        return count;
+    }
+
+    // How many cells were born in the step that produced this board. Only means anything straight after the step.
+    public int births () {
+        int count = 0;
+        for (int n : births) count += n;
+        return count;
+    }
+
+    // Same for deaths
+    public int deaths () {
+        int count = 0;
+        for (int n : deaths) count += n;
+        return count;
+    }
+
+    public int population () {
+        int count = 0;
+        for (long[] tile : tiles) {
+            if (tile == null) continue;
+            for (long word : tile) count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    // A Zobrist style hash of the live cells: every cell position has its own random looking 64 bit key and the hash
+    // is all the live cells' keys XORed together. Flipping a cell always flips the hash by the same key, so it can be
+    // kept up to date from the cells that changed alone (see hashChange()). Used to spot repeating patterns.
+    public long hash () {
+        long hash = 0;
+        for (int i = 0; i < tiles.length; i++) {
+            long[] tile = tiles[i];
+            if (tile == null) continue;
+            int w = i % wordsPerRow, firstRow = (i / wordsPerRow) << 6;
+            for (int row = 0; row < TILE_SIZE; row++) {
+                for (long word = tile[row]; word != 0; word &= word - 1) {
+                    hash ^= cellKey(firstRow + row, (w << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+        return hash;
+    }
+
+    // What to XOR this board's hash with to get the hash of 'next', the generation stepped from it. Only looks at
+    // the tiles the step flagged as changed, so it costs next to nothing once the board quietens down.
+    public long hashChange (BitBoard next) {
+        long change = 0;
+        for (int i = 0; i < tiles.length; i++) {
+            if (!next.changed[i]) continue;
+            long[] before = tiles[i], after = next.tiles[i];
+            int w = i % wordsPerRow, firstRow = (i / wordsPerRow) << 6;
+            for (int row = 0; row < TILE_SIZE; row++) {
+                long flipped = (before == null ? 0 : before[row]) ^ (after == null ? 0 : after[row]);
+                for (; flipped != 0; flipped &= flipped - 1) {
+                    change ^= cellKey(firstRow + row, (w << 6) + Long.numberOfTrailingZeros(flipped));
+                }
+            }
+        }
+        return change;
+    }
+
+    // The key for one cell. A fixed mix of its position (the SplitMix64 finaliser) rather than a table of random
+    // numbers, so boards of any size get keys without storing any.
+    static long cellKey (int r, int c) {
+        long z = (((long) r << 32) | c) + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // How many generations it would take the closest live cell to reach outside the board, travelling at one cell
+    // per generation. Integer.MAX_VALUE if the board is empty.
+    public int distanceToEdge () {
+        int[] bounds = bounds();
+        if (bounds == null) return Integer.MAX_VALUE;
+        return Math.min(Math.min(bounds[0] + 1, rows - bounds[2]), Math.min(bounds[1] + 1, cols - bounds[3]));
+    }
+
+    // The smallest box around everything alive, as {top row, left column, bottom row, right column}, all
+    // inclusive. null if the board is empty.
+    public int[] bounds () {
+        return boundsOf(null);
+    }
+
+    // The same kind of box around every cell that is different on 'other', which must be the same size. null if
+    // they are the same. Used to find the part of the screen a new generation changes.
+    public int[] boundsOfDifference (BitBoard other) {
+        return boundsOf(other);
+    }
+
+    private int[] boundsOf (BitBoard other) {
+        int minRow = Integer.MAX_VALUE, maxRow = -1, minCol = Integer.MAX_VALUE, maxCol = -1;
+        for (int i = 0; i < tiles.length; i++) {
+            long[] tile = tiles[i], otherTile = other == null ? null : other.tiles[i];
+            if (tile == null && otherTile == null) continue;
+            int w = i % wordsPerRow, firstRow = (i / wordsPerRow) << 6;
+            for (int row = 0; row < TILE_SIZE; row++) {
+                long word = (tile == null ? 0 : tile[row]) ^ (otherTile == null ? 0 : otherTile[row]);
+                if (word == 0) continue;
+                minRow = Math.min(minRow, firstRow + row);
+                maxRow = Math.max(maxRow, firstRow + row);
+                minCol = Math.min(minCol, (w << 6) + Long.numberOfTrailingZeros(word));
+                maxCol = Math.max(maxCol, (w << 6) + 63 - Long.numberOfLeadingZeros(word));
+            }
+        }
+        if (maxRow == -1) return null;
+        return new int[] {minRow, minCol, maxRow, maxCol};
+    }
+
+    // An empty board of the given size, keeping ages if this one does
+    private BitBoard blank (int newRows, int newCols) {
+        BitBoard board = new BitBoard(newRows, newCols);
+        board.setTrackingAges(ages != null);
+        return board;
+    }
+
+    // Returns a new board turned 90 degrees. Mirrors the order GameData.rotatePetriDish() puts cells in. Turning
+    // clockwise is swapping rows for columns and then flipping left to right, anticlockwise flipping top to bottom.
+    public BitBoard rotated (boolean clockwise) {
+        return transposed().mirrored(clockwise);
+    }
+
+    // Returns a new board with rows and columns swapped. Tile (row, word) becomes tile (word, row), transposed as a
+    // 64 x 64 bit matrix (see transpose()).
+    private BitBoard transposed () {
+        BitBoard swapped = blank(cols, rows);
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] == null) continue;
+            int tileRow = i / wordsPerRow, word = i % wordsPerRow;
+            int j = word * swapped.wordsPerRow + tileRow;
+            long[] tile = tiles[i].clone();
+            transpose(tile);
+            swapped.tiles[j] = tile;
+            if (ages == null) continue;
+            swapped.ageing[j] = true;
+            if (ages[i] == null) continue;
+            byte[] from = ages[i], to = swapped.ageTile(j);
+            for (int row = 0; row < TILE_SIZE; row++) {
+                for (int bit = 0; bit < TILE_SIZE; bit++) {
+                    to[bit << 6 | row] = from[row << 6 | bit];
+                }
+            }
+        }
+        return swapped;
+    }
+
+    // Transposes a tile in place: bit c of row r swaps with bit r of row c. Swaps the off-diagonal 32 x 32 blocks,
+    // then the 16 x 16 blocks within each of those, and so on down to single bits, a whole word at a time
+    // (Hacker's Delight, 7-3).
+    static void transpose (long[] tile) {
+        long mask = 0x00000000FFFFFFFFL;
+        for (int j = 32; j != 0; j >>= 1, mask ^= mask << j) {
+            for (int k = 0; k < TILE_SIZE; k = ((k | j) + 1) & ~j) {
+                long swap = ((tile[k] >>> j) ^ tile[k | j]) & mask;
+                tile[k] ^= swap << j;
+                tile[k | j] ^= swap;
+            }
+        }
+    }
+
+    // Returns a new board of the given size with this one centred in it. Cells that no longer fit are dropped.
+    // The offsets match the ones GameData.resizePetriDish() uses when it adds or removes cells.
+    public BitBoard resized (int newRows, int newCols) {
+        BitBoard sized = blank(newRows, newCols);
+        RowMover mover = new RowMover(this, sized);
+        int rowOffset = (newRows - rows) / 2, colOffset = (newCols - cols) / 2;
+        for (int r = Math.max(0, -rowOffset); r < Math.min(rows, newRows - rowOffset); r++) {
+            mover.move(r, r + rowOffset, colOffset, false, false);
+        }
+        return sized;
+    }
+
+    // Returns a new board flipped left to right (leftRight) or top to bottom. Mirrors Geometry.mirror().
+    public BitBoard mirrored (boolean leftRight) {
+        BitBoard flipped = blank(rows, cols);
+        RowMover mover = new RowMover(this, flipped);
+        for (int r = 0; r < rows; r++) {
+            if (leftRight) mover.move(r, r, 0, false, true);
+            else mover.move(r, rows - 1 - r, 0, false, false);
+        }
+        return flipped;
+    }
+
+    // Returns a new board with everything moved down and right by the given number of cells (up and left when
+    // negative). Cells moved off one side come back on the other when wrap is true and are dropped otherwise.
+    // Mirrors Geometry.shifted().
+    public BitBoard shifted (int down, int right, boolean wrap) {
+        BitBoard moved = blank(rows, cols);
+        RowMover mover = new RowMover(this, moved);
+        if (wrap) {
+            down = ((down % rows) + rows) % rows;
+            right = ((right % cols) + cols) % cols;
+        }
+        for (int r = 0; r < rows; r++) {
+            int to = r + down;
+            if (wrap) to %= rows;
+            else if (to < 0 || to >= rows) continue;
+            mover.move(r, to, right, wrap, false);
+        }
+        return moved;
+    }
+
+    // Row r as wordsPerRow words. Returns false if there's nothing alive in it.
+    private boolean readRow (int r, long[] words) {
+        int first = (r >>> 6) * wordsPerRow;
+        boolean any = false;
+        for (int w = 0; w < wordsPerRow; w++) {
+            long[] tile = tiles[first + w];
+            words[w] = tile == null ? 0 : tile[r & 63];
+            any |= words[w] != 0;
+        }
+        return any;
+    }
+
+    // Writes row r of a board that's still empty there. Only tiles with something in them get allocated.
+    private void writeRow (int r, long[] words) {
+        int first = (r >>> 6) * wordsPerRow;
+        for (int w = 0; w < wordsPerRow; w++) {
+            if (words[w] == 0) continue;
+            if (tiles[first + w] == null) tiles[first + w] = new long[TILE_SIZE];
+            tiles[first + w][r & 63] = words[w];
+            if (ageing != null) ageing[first + w] = true;
+        }
+    }
+
+    // The ages along row r, a byte per column
+    private void readAges (int r, byte[] row) {
+        int first = (r >>> 6) * wordsPerRow, start = (r & 63) << 6;
+        for (int w = 0; w < wordsPerRow; w++) {
+            int length = Math.min(TILE_SIZE, cols - (w << 6));
+            if (ages[first + w] == null) Arrays.fill(row, w << 6, (w << 6) + length, (byte) 0);
+            else System.arraycopy(ages[first + w], start, row, w << 6, length);
+        }
+    }
+
+    // Sets the ages along row r, wherever there's a tile for them to go in
+    private void writeAges (int r, byte[] row) {
+        int first = (r >>> 6) * wordsPerRow, start = (r & 63) << 6;
+        for (int w = 0; w < wordsPerRow; w++) {
+            if (tiles[first + w] == null) continue;
+            System.arraycopy(row, w << 6, ageTile(first + w), start, Math.min(TILE_SIZE, cols - (w << 6)));
+        }
+    }
+
+    // ORs the bits of 'from' into 'to', moved 'by' columns right (left when negative) a word at a time. Bits that
+    // end up outside the first toCols columns are dropped.
+    private static void shiftBits (long[] from, long[] to, int by, int toCols) {
+        int wordShift = by >> 6, bitShift = by & 63;
+        for (int w = 0; w < from.length; w++) {
+            if (from[w] == 0) continue;
+            int at = w + wordShift;
+            if (at >= 0 && at < to.length) to[at] |= from[w] << bitShift;
+            if (bitShift != 0 && at + 1 >= 0 && at + 1 < to.length) to[at + 1] |= from[w] >>> (64 - bitShift);
+        }
+        int spare = (to.length << 6) - toCols;
+        if (spare > 0) to[to.length - 1] &= -1L >>> spare;
+    }
+
+    // The same for a byte per column, with System.arraycopy
+    private static void shiftBytes (byte[] from, int fromCols, byte[] to, int toCols, int by) {
+        int start = Math.max(0, -by), end = Math.min(fromCols, toCols - by);
+        if (start < end) System.arraycopy(from, start, to, start + by, end - start);
+    }
+
+    /* Copies whole rows from one board to another, moving them sideways on the way if need be. A row is read into
+     * a flat buffer of words, shifted (and flipped) there a word at a time and written out again, and the same for
+     * its ages. The buffers are reused for every row.
+     */
+    private static class RowMover {
+        private final BitBoard from, to;
+        private final long[] words, moved;
+        private final byte[] ages, movedAges;
+
+        RowMover (BitBoard from, BitBoard to) {
+            this.from = from;
+            this.to = to;
+            words = new long[from.wordsPerRow];
+            moved = new long[to.wordsPerRow];
+            ages = from.ages == null ? null : new byte[from.cols];
+            movedAges = from.ages == null ? null : new byte[to.cols];
+        }
+
+        // Row r of 'from' to row toRow of 'to', 'by' columns to the right. With wrap, 0 <= by < columns, and what
+        // goes off the right comes back on the left. With flip the row is turned back to front first.
+        void move (int r, int toRow, int by, boolean wrap, boolean flip) {
+            if (!from.readRow(r, words)) return;
+            int bitsBy = by;
+            if (flip) {
+                // Reversing the words puts the row at the right hand end of them, so it has to come back left
+                for (int a = 0, b = words.length - 1; a <= b; a++, b--) {
+                    long temp = Long.reverse(words[a]);
+                    words[a] = Long.reverse(words[b]);
+                    words[b] = temp;
+                }
+                bitsBy -= (words.length << 6) - from.cols;
+            }
+            Arrays.fill(moved, 0);
+            shiftBits(words, moved, bitsBy, to.cols);
+            if (wrap && by != 0) shiftBits(words, moved, bitsBy - from.cols, to.cols);
+            to.writeRow(toRow, moved);
+
+            if (ages == null) return;
+            from.readAges(r, ages);
+            if (flip) {
+                for (int a = 0, b = from.cols - 1; a < b; a++, b--) {
+                    byte temp = ages[a];
+                    ages[a] = ages[b];
+                    ages[b] = temp;
+                }
+            }
+            shiftBytes(ages, from.cols, movedAges, to.cols, by);
+            if (wrap && by != 0) shiftBytes(ages, from.cols, movedAges, to.cols, by - from.cols);
+            to.writeAges(toRow, movedAges);
+        }
+    }
+
+    // Computes the generation after this one and writes it into 'next', which must be the same size.
+    // When incremental is true, only tiles near a change from the last generation are recalculated.
+    public void step (BitBoard next, boolean toroidal, Rule rule, boolean incremental) {
+        prepareAges(next);
+        lastActiveTiles = stepTileRows(next, toroidal, rule, incremental, 0, tileRows);
+    }
+
+    // Does the work of step() for tile rows fromTileRow (inclusive) to toTileRow (exclusive) only, and returns how
+    // many tiles were calculated. Tiles are read from this board and written to 'next' only, so separate stripes of
+    // tiles can be done at the same time on different threads.
+    int stepTileRows (BitBoard next, boolean toroidal, Rule rule, boolean incremental, int fromTileRow, int toTileRow) {
+        // Under a B0 rule empty space comes alive, so empty tiles can't be skipped
+        boolean birthOnZero = rule.nextState(false, 0);
+        int activeTiles = 0;
+
+        for (int tr = fromTileRow; tr < toTileRow; tr++) {
+            for (int w = 0; w < wordsPerRow; w++) {
+                int i = tr * wordsPerRow + w;
+                if (incremental && !aroundTile(changed, tr, w, toroidal)) {
+                    copyTile(next, i);
+                    if (ages != null) copyAges(next, i);
+                    next.changed[i] = false;
+                    next.births[i] = next.deaths[i] = 0;
+                    continue;
+                }
+                if (!birthOnZero && !aroundTile(null, tr, w, toroidal)) {
+                    next.changed[i] = false;
+                    next.tiles[i] = null;
+                    next.births[i] = next.deaths[i] = 0;
+                    continue;
+                }
+                activeTiles++;
+                stepTile(next, toroidal, rule, tr, w);
+            }
+        }
+        return activeTiles;
+    }
+
+    private void copyTile (BitBoard next, int i) {
+        if (tiles[i] == null) {
+            next.tiles[i] = null;
+            return;
+        }
+        if (next.tiles[i] == null) next.tiles[i] = new long[TILE_SIZE];
+        System.arraycopy(tiles[i], 0, next.tiles[i], 0, TILE_SIZE);
+    }
+
+    // Nothing in the tile changed, so everything alive in it is one generation older. Saturated tiles are left be.
+    private void copyAges (BitBoard next, int i) {
+        boolean young = false;
+        if (tiles[i] != null && ageing[i]) {
+            byte[] to = next.ageTile(i);
+            for (int row = 0; row < TILE_SIZE; row++) {
+                young |= ageRow(ages[i], to, row, tiles[i][row], tiles[i][row]);
+            }
+        }
+        else if (tiles[i] != null && ages[i] != null) {
+            System.arraycopy(ages[i], 0, next.ageTile(i), 0, TILE_SIZE * TILE_SIZE);
+        }
+        next.ageing[i] = young;
+    }
+
+    private void stepTile (BitBoard next, boolean toroidal, Rule rule, int tr, int w) {
+        int surviveMask = rule.survivalMask, bornMask = rule.birthMask;
+        int i = tr * wordsPerRow + w;
+        long[] out = next.tiles[i];
+        if (out == null) out = new long[TILE_SIZE];
+        byte[] fromAges = ages == null ? null : ages[i], toAges = ages == null ? null : next.ageTile(i);
+        boolean anyAlive = false, anyChanged = false, young = false;
+        int born = 0, died = 0;
+
+        int lastRow = Math.min(rows, (tr + 1) << 6);
+        for (int r = tr << 6; r < lastRow; r++) {
+            int above = r - 1, below = r + 1;
+            if (above < 0) above = toroidal ? rows - 1 : -1;
+            if (below == rows) below = toroidal ? 0 : -1;
+
+            long n = word(above, w), nw = westWord(above, w, toroidal), ne = eastWord(above, w, toroidal);
+            long wst = westWord(r, w, toroidal), est = eastWord(r, w, toroidal);
+            long s = word(below, w), sw = westWord(below, w, toroidal), se = eastWord(below, w, toroidal);
+
+            // Add the 8 neighbour planes together. Three full adders and a half adder give the 1s bit and
+            // four 2s carries, which are then added to give the 2s, 4s and 8s bits of the count.
+            long s1 = nw ^ n ^ ne, c1 = (nw & n) | (ne & (nw ^ n));
+            long s2 = wst ^ est ^ sw, c2 = (wst & est) | (sw & (wst ^ est));
+            long s3 = s ^ se, c3 = s & se;
+            long bit0 = s1 ^ s2 ^ s3, c4 = (s1 & s2) | (s3 & (s1 ^ s2));
+            long t = c1 ^ c2 ^ c3, c5 = (c1 & c2) | (c3 & (c1 ^ c2));
+            long bit1 = t ^ c4, c6 = t & c4;
+            long bit2 = c5 ^ c6, bit3 = c5 & c6;
+
+            long alive = word(r, w);
+            long result = 0;
+            for (int count = 0; count <= 8; count++) {
+                int bit = 1 << count;
+                if (((surviveMask | bornMask) & bit) == 0) continue;
+
+                long hasCount = ((count & 1) != 0 ? bit0 : ~bit0) & ((count & 2) != 0 ? bit1 : ~bit1)
+                        & ((count & 4) != 0 ? bit2 : ~bit2) & ((count & 8) != 0 ? bit3 : ~bit3);
+                if ((surviveMask & bit) != 0) result |= alive & hasCount;
+                if ((bornMask & bit) != 0) result |= ~alive & hasCount;
+            }
+            if (w == wordsPerRow - 1) result &= lastWordMask;
+
+            out[r & 63] = result;
+            if (toAges != null) young |= ageRow(fromAges, toAges, r & 63, alive, result);
+            anyAlive |= result != 0;
+            anyChanged |= result != alive;
+            born += Long.bitCount(result & ~alive);
+            died += Long.bitCount(alive & ~result);
+        }
+
+        // Everything in the tile died, so let it go
+        next.tiles[i] = anyAlive ? out : null;
+        next.changed[i] = anyChanged;
+        next.births[i] = born;
+        next.deaths[i] = died;
+        if (toAges != null) next.ageing[i] = young;
+    }
+
+    // With flags == null: whether the tile or any tile around it has anything alive in it.
+    // Otherwise: whether the tile or any tile around it has its flag set.
+    private boolean aroundTile (boolean[] flags, int tr, int w, boolean toroidal) {
+        for (int dr = -1; dr <= 1; dr++) {
+            int row = tr + dr;
+            if (row < 0 || row == tileRows) {
+                if (!toroidal) continue;
+                row = (row + tileRows) % tileRows;
+            }
+            for (int dw = -1; dw <= 1; dw++) {
+                int col = w + dw;
+                if (col < 0 || col == wordsPerRow) {
+                    if (!toroidal) continue;
+                    col = (col + wordsPerRow) % wordsPerRow;
+                }
+                int i = row * wordsPerRow + col;
+                if (flags == null ? tiles[i] != null : flags[i]) return true;
+            }
+        }
+        return false;
+    }
+
+    // The word itself, or nothing if the row is off the edge of a non-toroidal world or its tile is empty
+    private long word (int r, int w) {
+        if (r < 0) return 0;
+        long[] tile = tiles[(r >>> 6) * wordsPerRow + w];
+        return tile == null ? 0 : tile[r & 63];
+    }
+
+    // Bit c of the result is the cell to the west (left) of column c
+    private long westWord (int r, int w, boolean toroidal) {
+        if (r < 0) return 0;
+        long result = word(r, w) << 1;
+        if (w > 0) result |= word(r, w - 1) >>> 63;
+        else if (toroidal && get(r, cols - 1)) result |= 1;
+        return result;
+    }
+
+    // Bit c of the result is the cell to the east (right) of column c
+    private long eastWord (int r, int w, boolean toroidal) {
+        if (r < 0) return 0;
+        long result = word(r, w) >>> 1;
+        if (w < wordsPerRow - 1) result |= word(r, w + 1) << 63;
+        else if (toroidal && (word(r, 0) & 1) != 0) result |= 1L << ((cols - 1) & 63);
+        return result;
+    }
+}
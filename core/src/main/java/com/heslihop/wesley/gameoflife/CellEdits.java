@@ -0,0 +1,120 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/* Cells drawn in with a finger, on their way to the board. The UI thread adds the points the finger went through
+ * (startStroke(), strokeTo()) and whoever is about to work on the board next puts them on it (applyTo()) with the
+ * board locked, so edits always land between two generations and never in the middle of one.
+ *
+ * The screen only says where the finger was every so often, so each point is joined to the one before with a
+ * straight line of cells. A quick stroke then doesn't leave gaps.
+ *
+ * A stroke sets every cell it goes over the same way: alive if the first cell it touched was empty, empty if that
+ * one was alive. Going over a cell twice in one stroke does nothing more, and a tap just flips the one cell.
+ *
+ * The queue in between is lock free, so adding to it never waits for a generation to be finished. Points go over a
+ * touch event at a time (see flush()), not a cell at a time. The adding side is only ever used by one thread, and
+ * the applying side only with the board locked.
+ */
+
+public class CellEdits {
+    // Where a stroke starts in a batch, in place of a row. Followed by an unused column.
+    private static final int NEW_STROKE = Integer.MIN_VALUE;
+
+    private final ConcurrentLinkedQueue<int[]> pending = new ConcurrentLinkedQueue<>();
+
+    // Adding side. Row and column pairs for the touch event being put together, and the last point of the stroke.
+    private int[] batch = new int[64];
+    private int batchSize = 0;
+    private int lastRow, lastCol;
+    private boolean inStroke = false;
+
+    // Applying side. Which way the current stroke sets cells, once its first cell on the board is known.
+    private boolean strokeAlive, strokeStarting = false;
+
+    // A finger went down on the given cell. It may be off the board, only cells on it are changed.
+    public void startStroke (int row, int col) {
+        add(NEW_STROKE, 0);
+        add(row, col);
+        lastRow = row;
+        lastCol = col;
+        inStroke = true;
+    }
+
+    // The finger moved on to the given cell. Every cell on the way from the last one is added too (Bresenham's
+    // line), leaving out the last one, which is in already.
+    public void strokeTo (int row, int col) {
+        if (!inStroke) {
+            startStroke(row, col);
+            return;
+        }
+        int rowDistance = Math.abs(row - lastRow), colDistance = Math.abs(col - lastCol);
+        int rowStep = row > lastRow ? 1 : -1, colStep = col > lastCol ? 1 : -1;
+        int error = colDistance - rowDistance;
+        int r = lastRow, c = lastCol;
+        while (r != row || c != col) {
+            int twice = 2 * error;
+            if (twice > -rowDistance) {
+                error -= rowDistance;
+                c += colStep;
+            }
+            if (twice < colDistance) {
+                error += colDistance;
+                r += rowStep;
+            }
+            add(r, c);
+        }
+        lastRow = row;
+        lastCol = col;
+    }
+
+    // The finger came up. The next point starts a new stroke.
+    public void endStroke () {
+        inStroke = false;
+    }
+
+    private void add (int row, int col) {
+        if (batchSize + 2 > batch.length) batch = Arrays.copyOf(batch, batch.length * 2);
+        batch[batchSize++] = row;
+        batch[batchSize++] = col;
+    }
+
+    // Sends everything added since the last flush on its way, once per touch event. Returns false if there was
+    // nothing to send, i.e. the finger stayed within the same cell.
+    public boolean flush () {
+        if (batchSize == 0) return false;
+        pending.add(Arrays.copyOf(batch, batchSize));
+        batchSize = 0;
+        return true;
+    }
+
+    // Puts everything sent so far on the board. Only call with the board locked. Returns whether any cell changed.
+    public boolean applyTo (Simulation simulation) {
+        int rows = simulation.getRows(), cols = simulation.getColumns();
+        boolean changed = false;
+        int[] edits;
+        while ((edits = pending.poll()) != null) {
+            for (int i = 0; i < edits.length; i += 2) {
+                int row = edits[i], col = edits[i + 1];
+                if (row == NEW_STROKE) {
+                    strokeStarting = true;
+                    continue;
+                }
+                if (row < 0 || row >= rows || col < 0 || col >= cols) continue;
+
+                int index = row * cols + col;
+                boolean alive = simulation.get(index);
+                if (strokeStarting) {
+                    strokeAlive = !alive;
+                    strokeStarting = false;
+                }
+                if (alive != strokeAlive) {
+                    simulation.setAlive(index, strokeAlive);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+}
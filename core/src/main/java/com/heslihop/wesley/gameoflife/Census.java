@@ -0,0 +1,125 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* What a soup search found: how many of each object turned up once the soups settled, and the seeds of a few soups
+ * each one came from so they can be looked at again (see SoupSearch.soup()). Soups that never settled are kept
+ * with all their seeds, they are the interesting ones.
+ *
+ * Objects are named by SoupSearch.classify(). Each search thread fills a census of its own and they are added up
+ * with merge() at the end, so nothing in here needs to be thread safe.
+ */
+
+public class Census {
+    static final int SAMPLE_SEEDS = 5; // Seeds kept per object
+    static final String UNSETTLED = "unsettled";
+
+    private final Map<String, Long> counts = new HashMap<>();
+    private final Map<String, List<Long>> samples = new HashMap<>();
+    private final List<Long> unsettled = new ArrayList<>();
+    private int soups;
+
+    void add (String object, long seed) {
+        Long count = counts.get(object);
+        counts.put(object, count == null ? 1 : count + 1);
+
+        List<Long> seeds = samples.get(object);
+        if (seeds == null) {
+            seeds = new ArrayList<>();
+            samples.put(object, seeds);
+        }
+        if (seeds.size() < SAMPLE_SEEDS && !seeds.contains(seed)) seeds.add(seed);
+    }
+
+    void addUnsettled (long seed) {
+        unsettled.add(seed);
+    }
+
+    void soupDone () {
+        soups++;
+    }
+
+    // Adds another census to this one. Sample seeds are topped up in order, so the result doesn't depend on which
+    // thread finished first as long as the censuses are merged in seed order.
+    public void merge (Census other) {
+        soups += other.soups;
+        unsettled.addAll(other.unsettled);
+        for (Map.Entry<String, Long> entry : other.counts.entrySet()) {
+            String object = entry.getKey();
+            Long count = counts.get(object);
+            counts.put(object, count == null ? entry.getValue() : count + entry.getValue());
+            for (long seed : other.samples.get(object)) {
+                List<Long> seeds = samples.get(object);
+                if (seeds == null) {
+                    seeds = new ArrayList<>();
+                    samples.put(object, seeds);
+                }
+                if (seeds.size() < SAMPLE_SEEDS && !seeds.contains(seed)) seeds.add(seed);
+            }
+        }
+    }
+
+    public int getSoups () {
+        return soups;
+    }
+
+    public long getCount (String object) {
+        Long count = counts.get(object);
+        return count == null ? 0 : count;
+    }
+
+    public List<Long> getSampleSeeds (String object) {
+        List<Long> seeds = samples.get(object);
+        return seeds == null ? Collections.<Long>emptyList() : Collections.unmodifiableList(seeds);
+    }
+
+    public List<Long> getUnsettledSeeds () {
+        return Collections.unmodifiableList(unsettled);
+    }
+
+    // Objects found, most common first
+    public List<String> getObjects () {
+        List<String> objects = new ArrayList<>(counts.keySet());
+        Collections.sort(objects, new Comparator<String>() {
+            @Override
+            public int compare (String a, String b) {
+                long countA = counts.get(a), countB = counts.get(b);
+                if (countA != countB) return countA > countB ? -1 : 1;
+                return a.compareTo(b);
+            }
+        });
+        return objects;
+    }
+
+    // One line per object, most common first, with the unsettled soups at the end:
+    //     object,name,count,sample_seeds
+    // name is only filled in for well known Conway's Life objects. The seeds are separated by spaces.
+    public void writeCsv (Writer out, Rule rule) throws IOException {
+        out.write("object,name,count,sample_seeds\n");
+        for (String object : getObjects()) {
+            String name = rule.equals(Rule.CONWAY) ? SoupSearch.nameOf(object) : null;
+            out.write(object + "," + (name == null ? "" : name) + "," + counts.get(object) + ","
+                    + joined(samples.get(object)) + "\n");
+        }
+        if (!unsettled.isEmpty()) {
+            out.write(UNSETTLED + ",," + unsettled.size() + "," + joined(unsettled) + "\n");
+        }
+        out.flush();
+    }
+
+    private static String joined (List<Long> seeds) {
+        StringBuilder sb = new StringBuilder();
+        for (long seed : seeds) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(seed);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,17 @@
+package com.heslihop.wesley.gameoflife;
+
+/* Where anything that paces itself gets the time from. The real one is SYSTEM, and a fake one that only moves when
+ * told to makes the pacing (see FramePacer) checkable without waiting for real frames.
+ */
+
+public interface Clock {
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime () {
+            return System.nanoTime();
+        }
+    };
+
+    // Nanoseconds from some fixed but arbitrary point, like System.nanoTime()
+    long nanoTime ();
+}
@@ -0,0 +1,58 @@
+package com.heslihop.wesley.gameoflife;
+
+/* Notices when the board has settled down: stopped changing (period 1) or started repeating itself, like a field
+ * of blinkers (period 2). It is fed one board hash per generation (see BitBoard.hash()) and keeps the last HISTORY
+ * of them in a ring, so periods up to HISTORY generations can be spotted.
+ *
+ * A period only counts once every generation of a full cycle has come round again, which rules out a single
+ * coincidence. Until then, and after reset(), getPeriod() says 0.
+ *
+ * Per generation this is one comparison once a cycle is suspected, and at worst a scan of the ring otherwise.
+ */
+
+public class CycleDetector {
+    public static final int HISTORY = 128;
+
+    private final long[] hashes = new long[HISTORY];
+    private long recorded = 0; // How many hashes have been recorded since the last reset
+    private int candidate = 0; // The period the recent hashes suggest, 0 for none
+    private int matches = 0; // How many generations in a row have matched candidate generations back
+
+    public void record (long hash) {
+        if (candidate != 0 && hashAgo(candidate) == hash) {
+            matches++;
+        }
+        else {
+            // Smallest period that fits, if any
+            candidate = 0;
+            matches = 0;
+            long available = Math.min(recorded, HISTORY);
+            for (int lag = 1; lag <= available; lag++) {
+                if (hashAgo(lag) == hash) {
+                    candidate = lag;
+                    matches = 1;
+                    break;
+                }
+            }
+        }
+        hashes[(int) (recorded % HISTORY)] = hash;
+        recorded++;
+    }
+
+    // The hash recorded lag generations before the one about to be recorded
+    private long hashAgo (int lag) {
+        return hashes[(int) ((recorded - lag) % HISTORY)];
+    }
+
+    // The period the board has settled into, 1 for a still life, 0 if it hasn't (or we can't tell yet)
+    public int getPeriod () {
+        return (candidate != 0 && matches >= candidate) ? candidate : 0;
+    }
+
+    // Forget everything, i.e. when the board has been edited
+    public void reset () {
+        recorded = 0;
+        candidate = 0;
+        matches = 0;
+    }
+}
@@ -0,0 +1,85 @@
+package com.heslihop.wesley.gameoflife;
+
+/* Keeps the game in step with the display. Told the time of every vsync (see onFrame()), it works out how many
+ * steps are due by then at the speed asked for. The time left over is carried to the next frame rather than
+ * rounded away, so 10 generations a second on a 60 Hz display comes out as exactly one every sixth frame, and
+ * nothing drifts the way sleeping 1000 / gps milliseconds between generations did.
+ *
+ * It also learns the display's frame period from the vsyncs, counts the ones that were skipped, and times each
+ * frame from its vsync to being drawn (see frameDrawn()) into a FrameStats.
+ *
+ * The vsync times come in from outside and anything else from the Clock, so the whole thing runs against a fake
+ * clock just as well.
+ */
+
+public class FramePacer {
+    static final long DEFAULT_FRAME_NANOS = 1000000000L / 60;
+    // After a stall (a long GC, the app in the background) only this many frames' worth of steps are made up
+    static final int MAX_CATCH_UP_FRAMES = 4;
+
+    private final Clock clock;
+    private final FrameStats stats = new FrameStats();
+    private long stepNanos = 1000000000L / 10;
+    private long frameNanos = DEFAULT_FRAME_NANOS; // The display's frame period as measured
+    private long lastFrame = -1; // Time of the last vsync, -1 before the first one
+    private long owed = 0; // Time since the last step, in nanoseconds
+
+    public FramePacer (Clock clock) {
+        this.clock = clock;
+    }
+
+    public synchronized void setStepsPerSecond (int stepsPerSecond) {
+        stepNanos = 1000000000L / Math.max(1, stepsPerSecond);
+    }
+
+    // Forgets where it was, i.e. when the game starts again after a pause. The first step comes a full step's time
+    // after the first frame, like a sleep would have.
+    public synchronized void restart () {
+        lastFrame = -1;
+        owed = 0;
+    }
+
+    // Called for each vsync with its time (as Choreographer gives it). Returns the number of steps due now.
+    public synchronized int onFrame (long frameTimeNanos) {
+        if (lastFrame < 0) {
+            lastFrame = frameTimeNanos;
+            return 0;
+        }
+        long delta = frameTimeNanos - lastFrame;
+        lastFrame = frameTimeNanos;
+        if (delta <= 0) return 0;
+
+        // Anything close to a single frame refines the estimate of the period, anything longer means frames went by
+        if (delta < frameNanos * 3 / 2) frameNanos += (delta - frameNanos) / 8;
+        else stats.recordDropped((int) ((delta + frameNanos / 2) / frameNanos) - 1);
+
+        owed += Math.min(delta, MAX_CATCH_UP_FRAMES * Math.max(frameNanos, stepNanos));
+        int steps = (int) (owed / stepNanos);
+        owed -= steps * stepNanos;
+        return steps;
+    }
+
+    // The time now, to stamp frames that weren't asked for by a vsync (single steps, edits) with
+    public long now () {
+        return clock.nanoTime();
+    }
+
+    // Called once a frame for the given vsync time is on its way to the screen. It missed its deadline if that was
+    // after the next vsync.
+    public void frameDrawn (long frameTimeNanos) {
+        long took = clock.nanoTime() - frameTimeNanos;
+        long period;
+        synchronized (this) {
+            period = frameNanos;
+        }
+        stats.recordFrame(took, took > period);
+    }
+
+    public synchronized long getFrameNanos () {
+        return frameNanos;
+    }
+
+    public FrameStats getStats () {
+        return stats;
+    }
+}
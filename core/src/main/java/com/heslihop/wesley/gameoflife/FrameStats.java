@@ -0,0 +1,80 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.util.Locale;
+
+/* How long frames took, as a histogram with a bucket per millisecond, plus how many missed their deadline (weren't
+ * on screen by the next vsync) and how many display frames went by without the game getting a look in at all. So
+ * when playback stutters there are numbers to look at instead of guesses.
+ *
+ * Recorded by the drawing thread and read from the UI thread, hence synchronized.
+ */
+
+public class FrameStats {
+    // Bucket i holds frames that took i to i + 1 milliseconds, the last one everything longer
+    static final int BUCKETS = 64;
+
+    private final long[] histogram = new long[BUCKETS];
+    private long frames, missedDeadlines, droppedFrames, totalNanos, worstNanos;
+
+    // A frame that took 'nanos' from its vsync to being posted, and whether that was too late for the next one
+    public synchronized void recordFrame (long nanos, boolean missedDeadline) {
+        nanos = Math.max(0, nanos);
+        histogram[(int) Math.min(BUCKETS - 1, nanos / 1000000)]++;
+        frames++;
+        totalNanos += nanos;
+        worstNanos = Math.max(worstNanos, nanos);
+        if (missedDeadline) missedDeadlines++;
+    }
+
+    // Vsyncs that came and went without a callback, i.e. the main thread was busy
+    public synchronized void recordDropped (int count) {
+        droppedFrames += count;
+    }
+
+    public synchronized void reset () {
+        for (int i = 0; i < BUCKETS; i++) histogram[i] = 0;
+        frames = missedDeadlines = droppedFrames = totalNanos = worstNanos = 0;
+    }
+
+    public synchronized long getFrames () {
+        return frames;
+    }
+
+    public synchronized long getMissedDeadlines () {
+        return missedDeadlines;
+    }
+
+    public synchronized long getDroppedFrames () {
+        return droppedFrames;
+    }
+
+    public synchronized double getAverageMillis () {
+        return frames == 0 ? 0 : totalNanos / 1e6 / frames;
+    }
+
+    public synchronized double getWorstMillis () {
+        return worstNanos / 1e6;
+    }
+
+    // The time, in whole milliseconds, that the given share of frames (i.e. 0.99) took no longer than. Rounded up to
+    // the end of its bucket.
+    public synchronized int getPercentileMillis (double share) {
+        long wanted = (long) Math.ceil(frames * share), seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= wanted && seen > 0) return i + 1;
+        }
+        return 0;
+    }
+
+    public synchronized long[] getHistogram () {
+        return histogram.clone();
+    }
+
+    @Override
+    public synchronized String toString () {
+        return String.format(Locale.US, "%d frames, average %.1f ms, 50%% %d ms, 90%% %d ms, 99%% %d ms, worst %.1f ms, "
+                + "%d missed deadlines, %d dropped", frames, getAverageMillis(), getPercentileMillis(0.5),
+                getPercentileMillis(0.9), getPercentileMillis(0.99), getWorstMillis(), missedDeadlines, droppedFrames);
+    }
+}
@@ -0,0 +1,125 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/* Population, births and deaths for each of the last so many generations, for comparing how rules and starting
+ * patterns play out. Kept in plain int arrays used as a ring, so recording a generation is four array writes and
+ * never allocates. Once the ring is full the oldest generations are overwritten.
+ *
+ * The numbers themselves come out of the step (see BitBoard.births()), not from counting the board again.
+ *
+ * Generations don't have to follow on from each other. When the simulation jumps ahead (HashLife, or skipping
+ * whole periods of a cycle) only the generation it lands on is recorded, with births and deaths UNKNOWN, and the
+ * ones jumped over aren't there at all.
+ */
+
+public class GenerationStats {
+    // Births and deaths of a generation that was jumped to rather than stepped to
+    public static final int UNKNOWN = -1;
+
+    private final int[] generation, population, births, deaths;
+    private int next = 0, size = 0;
+
+    public GenerationStats (int capacity) {
+        generation = new int[capacity];
+        population = new int[capacity];
+        births = new int[capacity];
+        deaths = new int[capacity];
+    }
+
+    public void record (int generation, int population, int births, int deaths) {
+        this.generation[next] = generation;
+        this.population[next] = population;
+        this.births[next] = births;
+        this.deaths[next] = deaths;
+        next = (next + 1) % this.generation.length;
+        if (size < this.generation.length) size++;
+    }
+
+    // Forgets the generations after 'last', i.e. after the board was rewound to it
+    public void dropAfter (int last) {
+        while (size > 0 && generation[slot(size - 1)] > last) {
+            size--;
+            next = (next - 1 + generation.length) % generation.length;
+        }
+    }
+
+    public void clear () {
+        next = 0;
+        size = 0;
+    }
+
+    // How many generations are held, at most the capacity
+    public int size () {
+        return size;
+    }
+
+    public int capacity () {
+        return generation.length;
+    }
+
+    // i counts from the oldest generation held (0) to the newest (size() - 1)
+    private int slot (int i) {
+        return (next - size + i + generation.length) % generation.length;
+    }
+
+    public int getGeneration (int i) {
+        return generation[slot(i)];
+    }
+
+    public int getPopulation (int i) {
+        return population[slot(i)];
+    }
+
+    public int getBirths (int i) {
+        return births[slot(i)];
+    }
+
+    public int getDeaths (int i) {
+        return deaths[slot(i)];
+    }
+
+    // Writes everything held, oldest first, as CSV with a header line. The text is put together in one buffer and
+    // handed to the channel whenever it fills up, rather than building a String per line.
+    public void writeCsv (WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        buffer.put("generation,population,births,deaths\n".getBytes("US-ASCII"));
+
+        for (int i = 0; i < size; i++) {
+            // 4 numbers of at most 11 characters each, plus separators
+            if (buffer.remaining() < 64) flush(buffer, channel);
+            int s = slot(i);
+            putInt(buffer, generation[s]);
+            buffer.put((byte) ',');
+            putInt(buffer, population[s]);
+            buffer.put((byte) ',');
+            putInt(buffer, births[s]);
+            buffer.put((byte) ',');
+            putInt(buffer, deaths[s]);
+            buffer.put((byte) '\n');
+        }
+        flush(buffer, channel);
+    }
+
+    private static void flush (ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    // Writes the decimal digits of n straight into the buffer
+    private static void putInt (ByteBuffer buffer, int n) {
+        long value = n; // So that -Integer.MIN_VALUE still fits
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor * 10 <= value) divisor *= 10;
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + (value / divisor) % 10));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.util.Arrays;
+
+/* Moves a whole board's worth of per-cell values around: resizing, turning, mirroring and shifting. The values are
+ * kept in one flat array of rows * cols ints in row order (index = row * cols + col), the same order petriDish and
+ * BitBoard's flat indexes use, i.e. the cell colours GameData keeps.
+ *
+ * Anything that keeps rows intact (resizing, shifting, flipping top to bottom) is done a row at a time with
+ * System.arraycopy, so even a big board only takes a few hundred copies. Turning can't be, as every row becomes a
+ * column, but it is still one pass over a primitive array.
+ *
+ * The offsets are the same as BitBoard's resized(), rotated(), mirrored() and shifted(), so values moved here stay
+ * lined up with the cells moved there.
+ */
+
+public class Geometry {
+
+    private Geometry () {
+    }
+
+    // Returns the values centred in a newRows x newCols array. Whatever doesn't fit is dropped and new space is
+    // filled with 'fill'.
+    public static int[] resized (int[] values, int rows, int cols, int newRows, int newCols, int fill) {
+        int[] sized = new int[newRows * newCols];
+        if (fill != 0) Arrays.fill(sized, fill);
+        int rowOffset = (newRows - rows) / 2, colOffset = (newCols - cols) / 2;
+        copyBlock(values, rows, cols, sized, newRows, newCols, rowOffset, colOffset);
+        return sized;
+    }
+
+    // Returns the values turned 90 degrees, as a cols x rows array
+    public static int[] rotated (int[] values, int rows, int cols, boolean clockwise) {
+        int[] turned = new int[values.length];
+        int i = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                // The new board has 'rows' columns
+                if (clockwise) turned[c * rows + rows - 1 - r] = values[i++];
+                else turned[(cols - 1 - c) * rows + r] = values[i++];
+            }
+        }
+        return turned;
+    }
+
+    // Flips the values left to right (leftRight) or top to bottom, in place
+    public static void mirror (int[] values, int rows, int cols, boolean leftRight) {
+        if (leftRight) {
+            for (int start = 0; start < values.length; start += cols) {
+                for (int a = start, b = start + cols - 1; a < b; a++, b--) {
+                    int temp = values[a];
+                    values[a] = values[b];
+                    values[b] = temp;
+                }
+            }
+            return;
+        }
+        int[] row = new int[cols];
+        for (int top = 0, bottom = rows - 1; top < bottom; top++, bottom--) {
+            System.arraycopy(values, top * cols, row, 0, cols);
+            System.arraycopy(values, bottom * cols, values, top * cols, cols);
+            System.arraycopy(row, 0, values, bottom * cols, cols);
+        }
+    }
+
+    // Returns the values moved down and right by the given number of cells (up and left when negative). With wrap
+    // whatever goes off one side comes back on the other, otherwise it is dropped and the space left behind is
+    // filled with 'fill'.
+    public static int[] shifted (int[] values, int rows, int cols, int down, int right, boolean wrap, int fill) {
+        int[] moved = new int[values.length];
+        if (!wrap) {
+            if (fill != 0) Arrays.fill(moved, fill);
+            copyBlock(values, rows, cols, moved, rows, cols, down, right);
+            return moved;
+        }
+
+        down = ((down % rows) + rows) % rows;
+        right = ((right % cols) + cols) % cols;
+        for (int r = 0; r < rows; r++) {
+            int from = r * cols, to = ((r + down) % rows) * cols;
+            // The end of the row wraps round to the start
+            System.arraycopy(values, from, moved, to + right, cols - right);
+            System.arraycopy(values, from + cols - right, moved, to, right);
+        }
+        return moved;
+    }
+
+    // Copies every row of a rows x cols array into a toRows x toCols one, moved down by rowOffset and right by
+    // colOffset, leaving out whatever lands outside it
+    private static void copyBlock (int[] from, int rows, int cols, int[] to, int toRows, int toCols,
+                                   int rowOffset, int colOffset) {
+        int firstCol = Math.max(0, -colOffset), lastCol = Math.min(cols, toCols - colOffset); // Exclusive
+        if (firstCol >= lastCol) return;
+        for (int r = Math.max(0, -rowOffset); r < rows && r + rowOffset < toRows; r++) {
+            System.arraycopy(from, r * cols + firstCol, to, (r + rowOffset) * toCols + firstCol + colOffset,
+                    lastCol - firstCol);
+        }
+    }
+}
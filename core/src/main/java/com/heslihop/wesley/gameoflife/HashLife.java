@@ -0,0 +1,301 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* Bill Gosper's HashLife. The world is stored as a quadtree where identical squares are only ever stored once
+ * (hash-consing), and every square remembers what its centre looks like some number of generations later. Patterns
+ * that repeat themselves in space or time end up hitting that memory over and over, which is how it can jump 2^k
+ * generations in roughly the time it takes to step a handful.
+ *
+ * HashLife works on an infinite plane, but our world is a fixed grid that is either walled off or wraps around.
+ * The two only behave the same while nothing gets close enough to the edge to notice it. Nothing travels faster than
+ * one cell per generation, so a jump is only made when every live cell is further from the edge than the jump is
+ * long. When that isn't true (or the rule gives birth on 0 neighbours, which an infinite plane can't do)
+ * advance() does nothing and the caller has to step normally.
+ */
+
+public class HashLife {
+    // Jumps shorter than this aren't worth building the tree for
+    static final int MIN_JUMP = 8;
+
+    private final Rule rule;
+    private final Node[] emptyNodes = new Node[64];
+    private final Map<Node, Node> nodeCache;
+
+    static final class Node {
+        final Node nw, ne, sw, se;
+        final int level; // This node is a square 2^level cells wide
+        final long population;
+        private final int hash;
+
+        // The centre half of this square, 2^resultStep generations later
+        Node result;
+        int resultStep = -1;
+
+        Node (Node nw, Node ne, Node sw, Node se) {
+            this.nw = nw; this.ne = ne; this.sw = sw; this.se = se;
+            level = nw.level + 1;
+            population = nw.population + ne.population + sw.population + se.population;
+            hash = 31 * (31 * (31 * System.identityHashCode(nw) + System.identityHashCode(ne))
+                    + System.identityHashCode(sw)) + System.identityHashCode(se);
+        }
+
+        // Single cell
+        Node (boolean alive) {
+            nw = ne = sw = se = null;
+            level = 0;
+            population = alive ? 1 : 0;
+            hash = alive ? 1 : 0;
+        }
+
+        // Two squares are the same if they are made of the very same (already unique) quarters
+        @Override
+        public boolean equals (Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Node)) return false;
+            Node other = (Node) o;
+            return level > 0 && nw == other.nw && ne == other.ne && sw == other.sw && se == other.se;
+        }
+
+        @Override
+        public int hashCode () {
+            return hash;
+        }
+    }
+
+    private static final Node DEAD = new Node(false), ALIVE = new Node(true);
+
+    // maxNodes bounds the cache. Least recently used squares are dropped (along with what they remember) when it
+    // fills up. That only costs speed: a dropped square is simply rebuilt next time it is needed.
+    public HashLife (Rule rule, final int maxNodes) {
+        this.rule = rule;
+        nodeCache = new LinkedHashMap<Node, Node>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<Node, Node> eldest) {
+                if (size() <= maxNodes) return false;
+                eldest.getKey().result = null;
+                return true;
+            }
+        };
+    }
+
+    public Rule getRule () {
+        return rule;
+    }
+
+    public int getCacheSize () {
+        return nodeCache.size();
+    }
+
+    // Advances the board by up to 'generations', in jumps of powers of two, for as long as it is safe (see top).
+    // Returns how many generations were actually advanced, which may be 0.
+    public int advance (BitBoard board, int generations) {
+        if (rule.nextState(false, 0) || safeJump(board.distanceToEdge(), generations) < MIN_JUMP) return 0;
+
+        Node root = fromBoard(board);
+        int done = 0;
+        while (done < generations) {
+            int jump = safeJump(distanceToEdge(root, board.rows, board.cols), generations - done);
+            if (jump < 1) break;
+            root = advance(root, Integer.numberOfTrailingZeros(jump));
+            done += jump;
+        }
+        toBoard(root, board);
+        return done;
+    }
+
+    // The largest power of two no longer than 'generations' that stays clear of the edge
+    private static int safeJump (int distanceToEdge, int generations) {
+        int limit = Math.min(generations, distanceToEdge - 1);
+        return limit < 1 ? 0 : Integer.highestOneBit(limit);
+    }
+
+    // Advances the tree by exactly 2^k generations
+    Node advance (Node root, int k) {
+        // Grow until the pattern sits in the middle quarter, so that nothing can run off the result, then once more
+        while (root.level < k + 2 || root.level < 3 || centreOfCentre(root).population != root.population) {
+            root = expand(root);
+        }
+        root = expand(root);
+        return successor(root, k);
+    }
+
+    //// **** Building blocks **** ////
+
+    private Node join (Node nw, Node ne, Node sw, Node se) {
+        Node candidate = new Node(nw, ne, sw, se);
+        Node existing = nodeCache.get(candidate);
+        if (existing != null) return existing;
+        nodeCache.put(candidate, candidate);
+        return candidate;
+    }
+
+    private Node empty (int level) {
+        if (level == 0) return DEAD;
+        if (emptyNodes[level] == null) {
+            Node e = empty(level - 1);
+            emptyNodes[level] = join(e, e, e, e);
+        }
+        return emptyNodes[level];
+    }
+
+    // Same pattern, in a square twice as wide, with the old one in the middle
+    private Node expand (Node n) {
+        Node e = empty(n.level - 1);
+        return join(join(e, e, e, n.nw), join(e, e, n.ne, e), join(e, n.sw, e, e), join(n.se, e, e, e));
+    }
+
+    private Node centre (Node n) {
+        return join(n.nw.se, n.ne.sw, n.sw.ne, n.se.nw);
+    }
+
+    private Node centreOfCentre (Node n) {
+        return join(n.nw.se.se, n.ne.sw.sw, n.sw.ne.ne, n.se.nw.nw);
+    }
+
+    private Node horizontalCentre (Node w, Node e) {
+        return join(w.ne, e.nw, w.se, e.sw);
+    }
+
+    private Node verticalCentre (Node n, Node s) {
+        return join(n.sw, n.se, s.nw, s.ne);
+    }
+
+    // The centre half of n, 2^j generations later. j can be at most n.level - 2.
+    private Node successor (Node n, int j) {
+        if (n.population == 0) return empty(n.level - 1);
+        if (n.result != null && n.resultStep == j) return n.result;
+
+        Node result;
+        if (n.level == 2) {
+            result = oneGeneration(n);
+        }
+        else {
+            // Nine overlapping squares, each half the size of n
+            Node n00 = n.nw, n01 = horizontalCentre(n.nw, n.ne), n02 = n.ne;
+            Node n10 = verticalCentre(n.nw, n.sw), n11 = centre(n), n12 = verticalCentre(n.ne, n.se);
+            Node n20 = n.sw, n21 = horizontalCentre(n.sw, n.se), n22 = n.se;
+
+            if (j == n.level - 2) {
+                // Full speed: half the jump here, the other half below
+                n00 = successor(n00, j - 1); n01 = successor(n01, j - 1); n02 = successor(n02, j - 1);
+                n10 = successor(n10, j - 1); n11 = successor(n11, j - 1); n12 = successor(n12, j - 1);
+                n20 = successor(n20, j - 1); n21 = successor(n21, j - 1); n22 = successor(n22, j - 1);
+                result = join(successor(join(n00, n01, n10, n11), j - 1), successor(join(n01, n02, n11, n12), j - 1),
+                        successor(join(n10, n11, n20, n21), j - 1), successor(join(n11, n12, n21, n22), j - 1));
+            }
+            else {
+                // Shorter jump: just line the squares up and do the whole jump below
+                n00 = centre(n00); n01 = centre(n01); n02 = centre(n02);
+                n10 = centre(n10); n11 = centre(n11); n12 = centre(n12);
+                n20 = centre(n20); n21 = centre(n21); n22 = centre(n22);
+                result = join(successor(join(n00, n01, n10, n11), j), successor(join(n01, n02, n11, n12), j),
+                        successor(join(n10, n11, n20, n21), j), successor(join(n11, n12, n21, n22), j));
+            }
+        }
+
+        n.result = result;
+        n.resultStep = j;
+        return result;
+    }
+
+    // Bottom of the recursion: a 4x4 square gives the 2x2 in its middle one generation on
+    private Node oneGeneration (Node n) {
+        boolean[][] cells = new boolean[4][4];
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                Node quarter = (y < 2) ? ((x < 2) ? n.nw : n.ne) : ((x < 2) ? n.sw : n.se);
+                Node cell = ((y & 1) == 0) ? (((x & 1) == 0) ? quarter.nw : quarter.ne) : (((x & 1) == 0) ? quarter.sw : quarter.se);
+                cells[y][x] = cell == ALIVE;
+            }
+        }
+
+        Node[] next = new Node[4];
+        for (int i = 0; i < 4; i++) {
+            int y = 1 + i / 2, x = 1 + i % 2;
+            int count = 0;
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    if ((dx != 0 || dy != 0) && cells[y + dy][x + dx]) count++;
+                }
+            }
+            next[i] = rule.nextState(cells[y][x], count) ? ALIVE : DEAD;
+        }
+        return join(next[0], next[1], next[2], next[3]);
+    }
+
+    //// **** Converting to and from the grid **** ////
+    // The root is centred on (0,0). Grid cell (r, c) sits at x = c - cols / 2, y = r - rows / 2.
+
+    Node fromBoard (BitBoard board) {
+        int level = 3;
+        while ((1L << (level - 1)) < Math.max(board.rows, board.cols)) level++;
+        long half = 1L << (level - 1);
+        return build(board, level, -half, -half);
+    }
+
+    private Node build (BitBoard board, int level, long x0, long y0) {
+        long size = 1L << level;
+        int c0 = (int) (x0 + board.cols / 2), r0 = (int) (y0 + board.rows / 2);
+        if (c0 >= board.cols || r0 >= board.rows || c0 + size <= 0 || r0 + size <= 0) return empty(level);
+        if (level == 0) return board.get(r0, c0) ? ALIVE : DEAD;
+
+        long h = size / 2;
+        return join(build(board, level - 1, x0, y0), build(board, level - 1, x0 + h, y0),
+                build(board, level - 1, x0, y0 + h), build(board, level - 1, x0 + h, y0 + h));
+    }
+
+    void toBoard (Node root, BitBoard board) {
+        board.clear();
+        long half = 1L << (root.level - 1);
+        write(root, board, -half, -half);
+    }
+
+    private void write (Node n, BitBoard board, long x0, long y0) {
+        if (n.population == 0) return;
+        if (n.level == 0) {
+            long c = x0 + board.cols / 2, r = y0 + board.rows / 2;
+            if (r >= 0 && r < board.rows && c >= 0 && c < board.cols) board.set((int) r, (int) c, true);
+            return;
+        }
+        long h = 1L << (n.level - 1);
+        write(n.nw, board, x0, y0);
+        write(n.ne, board, x0 + h, y0);
+        write(n.sw, board, x0, y0 + h);
+        write(n.se, board, x0 + h, y0 + h);
+    }
+
+    // Same measure as BitBoard.distanceToEdge(), taken straight from the tree
+    private int distanceToEdge (Node root, int rows, int cols) {
+        long[] bounds = {Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        long half = 1L << (root.level - 1);
+        bounds(root, -half, -half, bounds);
+        if (bounds[0] == Long.MAX_VALUE) return Integer.MAX_VALUE;
+
+        long minC = bounds[0] + cols / 2, maxC = bounds[1] + cols / 2;
+        long minR = bounds[2] + rows / 2, maxR = bounds[3] + rows / 2;
+        long distance = Math.min(Math.min(minC + 1, cols - maxC), Math.min(minR + 1, rows - maxR));
+        return (int) Math.max(0, distance);
+    }
+
+    // Fills in {minX, maxX, minY, maxY} of the live cells, only visiting squares that have any
+    private void bounds (Node n, long x0, long y0, long[] bounds) {
+        if (n.population == 0) return;
+        long size = 1L << n.level;
+        // Nothing in here can widen what we already have
+        if (x0 >= bounds[0] && x0 + size - 1 <= bounds[1] && y0 >= bounds[2] && y0 + size - 1 <= bounds[3]) return;
+        if (n.level == 0) {
+            bounds[0] = Math.min(bounds[0], x0);
+            bounds[1] = Math.max(bounds[1], x0);
+            bounds[2] = Math.min(bounds[2], y0);
+            bounds[3] = Math.max(bounds[3], y0);
+            return;
+        }
+        long h = size / 2;
+        bounds(n.nw, x0, y0, bounds);
+        bounds(n.ne, x0 + h, y0, bounds);
+        bounds(n.sw, x0, y0 + h, bounds);
+        bounds(n.se, x0 + h, y0 + h, bounds);
+    }
+}
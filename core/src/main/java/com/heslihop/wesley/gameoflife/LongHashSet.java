@@ -0,0 +1,126 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.util.Arrays;
+
+/* A set of longs that stores them as plain longs, with no boxing and no entry objects. Open addressing with linear
+ * probing; the table doubles when it gets 60% full. One value (FREE) marks an empty slot, so it gets a flag of its
+ * own in case somebody really does want to store it.
+ *
+ * Iterate with:  for (int i = 0; i < set.capacity(); i++) if (set.isUsed(i)) ... set.keyAt(i)
+ */
+
+public class LongHashSet {
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int size, mask;
+    private boolean hasFreeKey;
+
+    public LongHashSet (int expectedSize) {
+        int capacity = 16;
+        while (capacity * 0.6 < expectedSize) capacity <<= 1;
+        keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+    }
+
+    public LongHashSet () {
+        this(16);
+    }
+
+    // Mixes the bits so that neighbouring coordinates don't end up in neighbouring slots
+    static int hash (long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    public boolean contains (long key) {
+        if (key == FREE) return hasFreeKey;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) return true;
+            if (keys[i] == FREE) return false;
+        }
+    }
+
+    // Returns true if the key wasn't there already
+    public boolean add (long key) {
+        if (key == FREE) {
+            if (hasFreeKey) return false;
+            hasFreeKey = true;
+            size++;
+            return true;
+        }
+        int i = hash(key) & mask;
+        while (keys[i] != FREE) {
+            if (keys[i] == key) return false;
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        if (++size > keys.length * 0.6) grow();
+        return true;
+    }
+
+    // Returns true if the key was there
+    public boolean remove (long key) {
+        if (key == FREE) {
+            if (!hasFreeKey) return false;
+            hasFreeKey = false;
+            size--;
+            return true;
+        }
+        int i = hash(key) & mask;
+        while (keys[i] != key) {
+            if (keys[i] == FREE) return false;
+            i = (i + 1) & mask;
+        }
+        keys[i] = FREE;
+        size--;
+
+        // Shuffle back any keys further along the run that could now be found in or before the slot just freed
+        for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                keys[j] = FREE;
+                i = j;
+            }
+        }
+        return true;
+    }
+
+    public void clear () {
+        Arrays.fill(keys, FREE);
+        size = 0;
+        hasFreeKey = false;
+    }
+
+    public int size () {
+        return size;
+    }
+
+    public int capacity () {
+        return keys.length + 1;
+    }
+
+    // Slot keys.length is the free key's own slot
+    public boolean isUsed (int slot) {
+        return slot == keys.length ? hasFreeKey : keys[slot] != FREE;
+    }
+
+    public long keyAt (int slot) {
+        return slot == keys.length ? FREE : keys[slot];
+    }
+
+    private void grow () {
+        long[] old = keys;
+        keys = new long[old.length * 2];
+        Arrays.fill(keys, FREE);
+        mask = keys.length - 1;
+        for (long key : old) {
+            if (key == FREE) continue;
+            int i = hash(key) & mask;
+            while (keys[i] != FREE) i = (i + 1) & mask;
+            keys[i] = key;
+        }
+    }
+}
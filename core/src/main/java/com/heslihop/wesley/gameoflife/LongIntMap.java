@@ -0,0 +1,98 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.util.Arrays;
+
+/* Counts per long key, stored as parallel primitive arrays. Same open addressing scheme as LongHashSet, and only
+ * what stepping needs: increment, get, clear and iterate.
+ */
+
+public class LongIntMap {
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int size, mask;
+    private boolean hasFreeKey;
+    private int freeValue;
+
+    public LongIntMap (int expectedSize) {
+        int capacity = 16;
+        while (capacity * 0.6 < expectedSize) capacity <<= 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+    }
+
+    public int get (long key) {
+        if (key == FREE) return hasFreeKey ? freeValue : 0;
+        for (int i = LongHashSet.hash(key) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) return values[i];
+            if (keys[i] == FREE) return 0;
+        }
+    }
+
+    // Adds one to the key's count (which starts at 0)
+    public void increment (long key) {
+        if (key == FREE) {
+            if (!hasFreeKey) size++;
+            hasFreeKey = true;
+            freeValue++;
+            return;
+        }
+        int i = LongHashSet.hash(key) & mask;
+        while (keys[i] != FREE) {
+            if (keys[i] == key) {
+                values[i]++;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = 1;
+        if (++size > keys.length * 0.6) grow();
+    }
+
+    public void clear () {
+        Arrays.fill(keys, FREE);
+        size = 0;
+        hasFreeKey = false;
+        freeValue = 0;
+    }
+
+    public int size () {
+        return size;
+    }
+
+    public int capacity () {
+        return keys.length + 1;
+    }
+
+    public boolean isUsed (int slot) {
+        return slot == keys.length ? hasFreeKey : keys[slot] != FREE;
+    }
+
+    public long keyAt (int slot) {
+        return slot == keys.length ? FREE : keys[slot];
+    }
+
+    public int valueAt (int slot) {
+        return slot == keys.length ? freeValue : values[slot];
+    }
+
+    private void grow () {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[keys.length];
+        Arrays.fill(keys, FREE);
+        mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == FREE) continue;
+            int i = LongHashSet.hash(oldKeys[j]) & mask;
+            while (keys[i] != FREE) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/* A pattern read from or written to one of the usual Life file formats, for BatchRunner. Two are understood:
+ *
+ *  - RLE: a header line like "x = 3, y = 3, rule = B3/S23" followed by runs of b (dead), o (alive) and $ (end of
+ *    row), each optionally preceded by a count, and ended by !. Lines starting with # are comments.
+ *  - Plaintext: one line per row, . for dead and O (or *) for alive. Lines starting with ! are comments.
+ *
+ * Cells are kept as (x, y) coordinates packed like SparseUniverse.pack(), relative to the top left corner of the
+ * pattern's bounding box.
+ */
+
+public class Pattern {
+    final int width, height;
+    final Rule rule; // null if the file didn't say
+    final long[] cells;
+
+    Pattern (int width, int height, Rule rule, long[] cells) {
+        this.width = width;
+        this.height = height;
+        this.rule = rule;
+        this.cells = cells;
+    }
+
+    // Reads either format, going by the first line that isn't a comment. Throws IOException for anything that
+    // isn't a pattern.
+    public static Pattern read (Reader in) throws IOException {
+        BufferedReader reader = new BufferedReader(in);
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("!")) continue;
+            lines.add(line);
+        }
+        if (lines.isEmpty()) throw new IOException("No pattern in file");
+
+        if (lines.get(0).startsWith("x")) return readRle(lines);
+        return readPlaintext(lines);
+    }
+
+    private static Pattern readRle (List<String> lines) throws IOException {
+        Rule rule = null;
+        int width = 0, height = 0;
+        for (String field : lines.get(0).split(",")) {
+            String[] keyValue = field.split("=");
+            if (keyValue.length != 2) continue;
+            String key = keyValue[0].trim(), value = keyValue[1].trim();
+            try {
+                if (key.equals("x")) width = Integer.parseInt(value);
+                else if (key.equals("y")) height = Integer.parseInt(value);
+                else if (key.equals("rule")) rule = parseRule(value);
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad RLE header " + lines.get(0), e);
+            }
+        }
+
+        List<Long> cells = new ArrayList<>();
+        int x = 0, y = 0, count = 0;
+        done:
+        for (int l = 1; l < lines.size(); l++) {
+            String line = lines.get(l);
+            for (int i = 0; i < line.length(); i++) {
+                char ch = line.charAt(i);
+                if (ch >= '0' && ch <= '9') {
+                    count = count * 10 + (ch - '0');
+                    continue;
+                }
+                int run = Math.max(1, count);
+                count = 0;
+                switch (ch) {
+                    case 'b':
+                    case '.':
+                        x += run;
+                        break;
+                    case '$':
+                        y += run;
+                        x = 0;
+                        break;
+                    case '!':
+                        break done;
+                    default:
+                        // o, and the letters multi-state rules use for other live states
+                        if (!Character.isLetter(ch)) throw new IOException("Unexpected '" + ch + "' in RLE");
+                        for (int n = 0; n < run; n++) cells.add(SparseUniverse.pack(x++, y));
+                        width = Math.max(width, x);
+                }
+            }
+        }
+        if (!cells.isEmpty()) height = Math.max(height, y + 1);
+        return new Pattern(width, height, rule, toArray(cells));
+    }
+
+    private static Pattern readPlaintext (List<String> lines) throws IOException {
+        List<Long> cells = new ArrayList<>();
+        int width = 0;
+        for (int y = 0; y < lines.size(); y++) {
+            String line = lines.get(y);
+            for (int x = 0; x < line.length(); x++) {
+                char ch = line.charAt(x);
+                if (ch == 'O' || ch == 'o' || ch == '*') cells.add(SparseUniverse.pack(x, y));
+                else if (ch != '.') throw new IOException("Unexpected '" + ch + "' in plaintext pattern");
+            }
+            width = Math.max(width, line.length());
+        }
+        return new Pattern(width, lines.size(), null, toArray(cells));
+    }
+
+    // Rules come as B3/S23 or in the older S/B order without letters, i.e. 23/3
+    private static Rule parseRule (String ruleString) throws IOException {
+        try {
+            if (ruleString.indexOf('B') == -1 && ruleString.indexOf('b') == -1) {
+                String[] halves = ruleString.split("/");
+                if (halves.length == 2) ruleString = "B" + halves[1] + "/S" + halves[0];
+            }
+            return Rule.parse(ruleString);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown rule " + ruleString, e);
+        }
+    }
+
+    private static long[] toArray (List<Long> list) {
+        long[] array = new long[list.size()];
+        for (int i = 0; i < array.length; i++) array[i] = list.get(i);
+        return array;
+    }
+
+    // The live cells of a board, trimmed to their bounding box
+    public static Pattern of (BitBoard board, Rule rule) {
+        List<Long> cells = new ArrayList<>();
+        for (int r = 0; r < board.rows; r++) {
+            for (int c = 0; c < board.cols; c++) {
+                if (board.get(r, c)) cells.add(SparseUniverse.pack(c, r));
+            }
+        }
+        return trimmed(toArray(cells), rule);
+    }
+
+    // The live cells of the whole infinite plane, trimmed to their bounding box
+    public static Pattern of (SparseUniverse universe, Rule rule) {
+        return trimmed(universe.liveCells(), rule);
+    }
+
+    private static Pattern trimmed (long[] cells, Rule rule) {
+        if (cells.length == 0) return new Pattern(0, 0, rule, cells);
+
+        long left = Long.MAX_VALUE, top = Long.MAX_VALUE, right = Long.MIN_VALUE, bottom = Long.MIN_VALUE;
+        for (long cell : cells) {
+            left = Math.min(left, SparseUniverse.unpackX(cell));
+            right = Math.max(right, SparseUniverse.unpackX(cell));
+            top = Math.min(top, SparseUniverse.unpackY(cell));
+            bottom = Math.max(bottom, SparseUniverse.unpackY(cell));
+        }
+        long[] moved = new long[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            moved[i] = SparseUniverse.pack(SparseUniverse.unpackX(cells[i]) - left, SparseUniverse.unpackY(cells[i]) - top);
+        }
+        return new Pattern((int) (right - left + 1), (int) (bottom - top + 1), rule, moved);
+    }
+
+    public int getWidth () {
+        return width;
+    }
+
+    public int getHeight () {
+        return height;
+    }
+
+    public Rule getRule () {
+        return rule;
+    }
+
+    public int getPopulation () {
+        return cells.length;
+    }
+
+    // Puts the pattern on the board with its top left corner at (top, left). Cells that don't fit are left out.
+    public void drawOn (Simulation simulation, int top, int left) {
+        int cols = simulation.getColumns(), rows = simulation.getRows();
+        for (long cell : cells) {
+            int r = top + SparseUniverse.unpackY(cell), c = left + SparseUniverse.unpackX(cell);
+            if (r >= 0 && r < rows && c >= 0 && c < cols) simulation.setAlive(r * cols + c, true);
+        }
+    }
+
+    // Writes the pattern as RLE, 70 characters to a line like most other programs do
+    public void writeRle (Writer out) throws IOException {
+        out.write("x = " + width + ", y = " + height + ", rule = " + (rule == null ? Rule.CONWAY : rule) + "\n");
+
+        BitBoard grid = new BitBoard(Math.max(1, height), Math.max(1, width));
+        for (long cell : cells) grid.set(SparseUniverse.unpackY(cell), SparseUniverse.unpackX(cell), true);
+
+        StringBuilder line = new StringBuilder();
+        int pendingRows = 0;
+        for (int r = 0; r < height; r++) {
+            int c = 0;
+            boolean rowStarted = false;
+            while (c < width) {
+                boolean alive = grid.get(r, c);
+                int run = 1;
+                while (c + run < width && grid.get(r, c + run) == alive) run++;
+                c += run;
+                if (!alive && c == width) break; // Dead cells at the end of a row are left out
+
+                if (!rowStarted && pendingRows > 0) {
+                    appendRun(out, line, pendingRows, '$');
+                    pendingRows = 0;
+                }
+                rowStarted = true;
+                appendRun(out, line, run, alive ? 'o' : 'b');
+            }
+            pendingRows++;
+        }
+        appendRun(out, line, 1, '!');
+        out.write(line.toString());
+        out.write("\n");
+        out.flush();
+    }
+
+    private static void appendRun (Writer out, StringBuilder line, int run, char tag) throws IOException {
+        String item = (run > 1 ? Integer.toString(run) : "") + tag;
+        if (line.length() + item.length() > 70) {
+            out.write(line.toString());
+            out.write("\n");
+            line.setLength(0);
+        }
+        line.append(item);
+    }
+}
@@ -0,0 +1,95 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.util.Arrays;
+
+/* Turns a board into pixels, one per cell, for boards too big to draw cell by cell. The pixels are ARGB ints in the
+ * same row order as the board (index = row * cols + col), ready to go into a bitmap the size of the board, which is
+ * then stretched over the screen in one go.
+ *
+ * Only tiles with something in them are looked at, a word at a time, and only the set bits of a word get a pixel
+ * written, so the work goes with the live cells and the board's size in pixels rather than with the number of
+ * cells. Everything else is left transparent.
+ *
+ * Looks the same as the cells drawing themselves (see Cell.drawSelf()) as far as one pixel can: a live cell is its
+ * colour, one about to be born is its colour half see-through and one about to die is black.
+ *
+ * A cell's colour is either its own, or when colouring by age, AGE_PALETTE's colour for how long it has been alive
+ * (see BitBoard.getAge()).
+ */
+
+public class Raster {
+    // Alpha of live cells and of the ones about to be born, the same as Cell uses for its circles
+    static final int ALIVE_ALPHA = 250, BORN_ALPHA = 120;
+    static final int DYING = 0xFF000000;
+    // Colours for ages from newborn to MAX_AGE, worked out in between. Fresh growth is pale yellow, turning green,
+    // then teal and blue, and anything that has stayed put for MAX_AGE generations ends up deep purple.
+    private static final int[] AGE_STOPS = {1, 4, 16, 48, BitBoard.MAX_AGE};
+    private static final int[] STOP_COLOURS = {0xFFFFF59D, 0xFF9CCC65, 0xFF26A69A, 0xFF1E88E5, 0xFF5E35B1};
+    // The colour for each age, worked out once. Unknown ages (0) get the oldest colour, as after a rewind or a jump
+    // whatever is still there has usually been there a while.
+    public static final int[] AGE_PALETTE = agePalette();
+
+    private Raster () {
+    }
+
+    private static int[] agePalette () {
+        int[] palette = new int[BitBoard.MAX_AGE + 1];
+        for (int s = 0; s < AGE_STOPS.length - 1; s++) {
+            int from = AGE_STOPS[s], to = AGE_STOPS[s + 1];
+            for (int age = from; age <= to; age++) {
+                palette[age] = blend(STOP_COLOURS[s], STOP_COLOURS[s + 1], (float) (age - from) / (to - from));
+            }
+        }
+        palette[0] = palette[BitBoard.MAX_AGE];
+        return palette;
+    }
+
+    // Each channel 'share' of the way from a to b
+    private static int blend (int a, int b, float share) {
+        int colour = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int from = (a >>> shift) & 0xFF, to = (b >>> shift) & 0xFF;
+            colour |= Math.round(from + (to - from) * share) << shift;
+        }
+        return colour;
+    }
+
+    // Fills pixels (at least rows * cols long) from the board, the next generation and the cells' colours (one per
+    // cell, in the same order). With a palette, cells are coloured by their age instead if the board has ages.
+    public static void paint (int[] pixels, BitBoard board, BitBoard next, int[] colours, int[] palette,
+                              boolean showNextGen, boolean markForDeath) {
+        boolean byAge = palette != null && board.ages != null;
+        int rows = board.rows, cols = board.cols;
+        Arrays.fill(pixels, 0, rows * cols, 0);
+        boolean useNext = showNextGen || markForDeath;
+
+        for (int i = 0; i < board.tiles.length; i++) {
+            long[] tile = board.tiles[i], nextTile = useNext ? next.tiles[i] : null;
+            if (tile == null && nextTile == null) continue;
+            int firstRow = (i / board.wordsPerRow) << 6, firstCol = (i % board.wordsPerRow) << 6;
+            int lastRow = Math.min(BitBoard.TILE_SIZE, rows - firstRow);
+            byte[] ages = byAge ? board.ages[i] : null;
+
+            for (int row = 0; row < lastRow; row++) {
+                long alive = tile == null ? 0 : tile[row];
+                long nextGen = nextTile == null ? 0 : nextTile[row];
+                long born = showNextGen ? nextGen & ~alive : 0;
+                long dying = markForDeath ? alive & ~nextGen : 0;
+                int start = (firstRow + row) * cols + firstCol;
+
+                for (long word = alive & ~dying; word != 0; word &= word - 1) {
+                    int bit = Long.numberOfTrailingZeros(word), p = start + bit;
+                    int colour = !byAge ? colours[p] : palette[ages == null ? 0 : ages[row << 6 | bit]];
+                    pixels[p] = (colour & 0xFFFFFF) | ALIVE_ALPHA << 24;
+                }
+                for (long word = born; word != 0; word &= word - 1) {
+                    int p = start + Long.numberOfTrailingZeros(word);
+                    pixels[p] = ((byAge ? palette[1] : colours[p]) & 0xFFFFFF) | BORN_ALPHA << 24;
+                }
+                for (long word = dying; word != 0; word &= word - 1) {
+                    pixels[start + Long.numberOfTrailingZeros(word)] = DYING;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/* A set of birth and survival rules, compiled once into lookup tables so the stepping code never has to search a
+ * list. Rules are written the standard way, e.g. "B3/S23" for Conway's Life: a dead cell with 3 neighbours is born,
+ * a live cell with 2 or 3 neighbours survives, everything else is dead next generation.
+ *
+ * Rules are immutable, so the same one can be handed around (GameData, the database, the preferences) freely.
+ */
+
+public final class Rule implements Serializable {
+    private static final long serialVersionUID = 1L; // Only for -Xlint:serial, see BitBoard
+
+    public static final Rule CONWAY = new Rule("Conway's Life", "B3/S23");
+    public static final Rule HIGHLIFE = new Rule("HighLife", "B36/S23");
+    public static final Rule SEEDS = new Rule("Seeds", "B2/S");
+    public static final Rule DAY_AND_NIGHT = new Rule("Day & Night", "B3678/S34678");
+    public static final Rule LIFE_WITHOUT_DEATH = new Rule("Life without Death", "B3/S012345678");
+    public static final Rule[] NAMED_RULES = {CONWAY, HIGHLIFE, SEEDS, DAY_AND_NIGHT, LIFE_WITHOUT_DEATH};
+
+    private final String name;
+    // Bit n is set when n neighbours gives a birth (or survival). Used by BitBoard to step 64 cells at once.
+    final int birthMask, survivalMask;
+    // nextState[n] for a dead cell with n neighbours, nextState[9 + n] for a live one.
+    private final boolean[] nextState = new boolean[18];
+
+    private Rule (String name, int birthMask, int survivalMask) {
+        this.birthMask = birthMask;
+        this.survivalMask = survivalMask;
+        for (int n = 0; n <= 8; n++) {
+            nextState[n] = (birthMask & (1 << n)) != 0;
+            nextState[9 + n] = (survivalMask & (1 << n)) != 0;
+        }
+        this.name = (name != null) ? name : toString();
+    }
+
+    private Rule (String name, String ruleString) {
+        this(name, parseMask(ruleString, 'B'), parseMask(ruleString, 'S'));
+    }
+
+    // Compiles a rule string such as "B36/S23". The order of the two halves and the case of the letters don't
+    // matter. Throws IllegalArgumentException for anything else.
+    public static Rule parse (String ruleString) {
+        Rule parsed = new Rule(null, ruleString);
+        for (Rule r : NAMED_RULES) {
+            if (r.equals(parsed)) return r;
+        }
+        return parsed;
+    }
+
+    // Builds a rule out of plain lists of neighbour counts, which is how they are stored in the database and in
+    // the preferences. Counts outside 0..8 can never happen and are ignored.
+    public static Rule fromCounts (Collection<Integer> need2BeBorn, Collection<Integer> need2Survive) {
+        Rule compiled = new Rule(null, maskOf(need2BeBorn), maskOf(need2Survive));
+        for (Rule r : NAMED_RULES) {
+            if (r.equals(compiled)) return r;
+        }
+        return compiled;
+    }
+
+    private static int maskOf (Collection<Integer> counts) {
+        int mask = 0;
+        for (int n : counts) {
+            if (n >= 0 && n <= 8) mask |= 1 << n;
+        }
+        return mask;
+    }
+
+    private static int parseMask (String ruleString, char letter) {
+        if (ruleString == null) throw new IllegalArgumentException("Rule string is null");
+
+        String[] halves = ruleString.trim().toUpperCase().split("/");
+        if (halves.length != 2) throw new IllegalArgumentException("Not a B/S rule: " + ruleString);
+
+        for (String half : halves) {
+            if (half.isEmpty() || half.charAt(0) != letter) continue;
+            int mask = 0;
+            for (int i = 1; i < half.length(); i++) {
+                char digit = half.charAt(i);
+                if (digit < '0' || digit > '8') throw new IllegalArgumentException("Bad neighbour count '" + digit + "' in " + ruleString);
+                mask |= 1 << (digit - '0');
+            }
+            return mask;
+        }
+        throw new IllegalArgumentException("No " + letter + " part in " + ruleString);
+    }
+
+    // The innermost question of the game: given this cell and its neighbour count, is it alive next generation?
+    public boolean nextState (boolean alive, int neighbourCount) {
+        return nextState[alive ? 9 + neighbourCount : neighbourCount];
+    }
+
+    public List<Integer> getBirthCounts () {
+        return countsOf(birthMask);
+    }
+
+    public List<Integer> getSurvivalCounts () {
+        return countsOf(survivalMask);
+    }
+
+    private static List<Integer> countsOf (int mask) {
+        List<Integer> counts = new ArrayList<>();
+        for (int n = 0; n <= 8; n++) {
+            if ((mask & (1 << n)) != 0) counts.add(n);
+        }
+        return counts;
+    }
+
+    public String getName () {
+        return name;
+    }
+
+    @Override
+    public String toString () {
+        StringBuilder sb = new StringBuilder("B");
+        for (int n : getBirthCounts()) sb.append(n);
+        sb.append("/S");
+        for (int n : getSurvivalCounts()) sb.append(n);
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals (Object o) {
+        if (!(o instanceof Rule)) return false;
+        Rule other = (Rule) o;
+        return birthMask == other.birthMask && survivalMask == other.survivalMask;
+    }
+
+    @Override
+    public int hashCode () {
+        return (birthMask << 9) | survivalMask;
+    }
+}
@@ -0,0 +1,513 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+/* The world and everything needed to move it forward, without any of the drawing. The app's GameData keeps one of
+ * these for the cells on screen, and BatchRunner uses one on its own to run patterns on a server.
+ *
+ * board is the current generation and nextBoard the one after it, worked out by calcNextGen(). In infinite mode the
+ * real world is a SparseUniverse and the boards are a window onto it, with the top left corner at (viewLeft, viewTop).
+ *
+ * Nothing in here is thread safe. The app steps it on its simulation thread and synchronizes on GameData around it.
+ */
+
+public class Simulation implements Serializable {
+    private static final long serialVersionUID = 1L; // Only for -Xlint:serial, see BitBoard
+    static final int STATS_HISTORY = 10000;
+
+    private boolean toroidal = true;
+    private long viewLeft = 0, viewTop = 0;
+    // Only recalculate the parts of the board near last generation's changes. See BitBoard.
+    private boolean incrementalStepping = true;
+    // Whether the boards keep how long each cell has been alive. See BitBoard.setTrackingAges().
+    private boolean trackingAges = false;
+    // How many threads calcNextGen() may use. 1 keeps everything on the calling thread.
+    private int parallelism = 1;
+    private int generationCounter = 0;
+    private Rule rule = Rule.CONWAY;
+    private BitBoard board, nextBoard;
+    // Settings the transient parts below are built from again after deserializing (see readObject())
+    private boolean infinite = false;
+    private long timelineBytes = 0;
+
+    transient private SparseUniverse universe; // Only exists in infinite mode
+    transient private ParallelStepper parallelStepper; // null when stepping on a single thread
+    transient private HashLife hashLife; // Built on first use and whenever the rule changes
+    // Whether nextBoard really is the generation after board. Anything that changes board (other than advancing)
+    // clears it, and the next generation is then worked out again, once, when it's needed.
+    transient private boolean nextGenIsCurrent = false;
+    // How many times a whole generation has been calculated. Lets us check nothing is calculated twice.
+    transient private long stepPasses = 0;
+    // Hash of board (see BitBoard.hash()), kept up to date as generations advance so the cycle detector can tell
+    // when the board starts repeating itself. Worked out from scratch again after any edit.
+    transient private long boardHash;
+    transient private boolean boardHashIsCurrent = false;
+    transient private CycleDetector cycleDetector = new CycleDetector();
+    // Population, births and deaths of recent generations. population is kept up to date from the births and
+    // deaths of each step, and -1 means it has to be counted again.
+    transient private GenerationStats stats = new GenerationStats(STATS_HISTORY);
+    transient private int population = -1;
+    // Recent generations to rewind to, null unless switched on with setTimelineBytes(). timelineIsCurrent says
+    // whether board is the generation the timeline holds as generationCounter, i.e. hasn't been edited since.
+    transient private Timeline timeline;
+    transient private boolean timelineIsCurrent = false;
+
+    public Simulation (int rows, int cols) {
+        board = new BitBoard(rows, cols);
+        nextBoard = new BitBoard(rows, cols);
+    }
+
+    // Deserializing doesn't run the transient fields' initializers, so they're all set up again here from the
+    // settings, as for a board that was just edited. The statistics and the timeline start empty, HashLife and
+    // the parallel stepper are built on first use as usual. In infinite mode only the window comes back, the rest
+    // of the plane was never written out.
+    private void readObject (ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        cycleDetector = new CycleDetector();
+        stats = new GenerationStats(STATS_HISTORY);
+        timeline = timelineBytes > 0 ? new Timeline(timelineBytes) : null;
+        if (infinite) {
+            universe = new SparseUniverse();
+            universe.loadWindowFrom(board, viewLeft, viewTop);
+        }
+        board.markAllChanged(); // Incremental stepping can't build on a nextBoard from before
+        invalidateNextGen();
+    }
+
+    // Gives the boards a fresh start at a new size. In infinite mode they show whatever is in the window.
+    public void newBoards (int rows, int cols) {
+        board = new BitBoard(rows, cols);
+        nextBoard = new BitBoard(rows, cols);
+        board.setTrackingAges(trackingAges);
+        if (universe != null) universe.copyWindowTo(board, viewLeft, viewTop, false);
+        invalidateNextGen();
+        if (timeline != null) timeline.clear();
+    }
+
+    // Replaces the whole board with the given live states (1 for alive), in row order. Starts counting again.
+    public void load (int[] liveStates) {
+        for (int i = 0; i < liveStates.length; i++) {
+            board.set(i, liveStates[i] == 1);
+        }
+        if (universe != null) {
+            universe.clear();
+            universe.loadWindowFrom(board, viewLeft, viewTop);
+        }
+        invalidateNextGen();
+        restart();
+    }
+
+    // Kills everything, including whatever is outside the window in infinite mode. Starts counting again.
+    public void clear () {
+        board.clear();
+        nextBoard.clear();
+        if (universe != null) universe.clear();
+        invalidateNextGen();
+        restart();
+    }
+
+    // Back to generation 0 with no statistics or history, for a new pattern
+    public void restart () {
+        generationCounter = 0;
+        stats.clear();
+        if (timeline != null) timeline.clear();
+        timelineIsCurrent = false;
+    }
+
+    public boolean get (int index) {
+        return board.get(index);
+    }
+
+    // Sets a single cell. The next generation will have to be recalculated.
+    public void setAlive (int index, boolean alive) {
+        board.set(index, alive);
+        if (universe != null) universe.set(viewLeft + index % board.cols, viewTop + index / board.cols, alive);
+        invalidateNextGen();
+    }
+
+    // Called whenever board changes other than by advancing. Any cycle found so far no longer holds either.
+    public void invalidateNextGen () {
+        nextGenIsCurrent = false;
+        boardHashIsCurrent = false;
+        cycleDetector.reset();
+        population = -1;
+        timelineIsCurrent = false;
+    }
+
+    // Makes sure nextBoard holds the generation after board, calculating it only if it doesn't already.
+    public void ensureNextGen () {
+        if (!nextGenIsCurrent) calcNextGen();
+    }
+
+    // Works out the next generation 64 cells at a time, counting neighbours and applying the rule in the same
+    // pass. See BitBoard.step(). Normally called through ensureNextGen() so it only happens once per generation.
+    public void calcNextGen () {
+        stepPasses++;
+        nextGenIsCurrent = true;
+
+        if (universe != null) {
+            universe.calcNext(rule);
+            universe.copyWindowTo(nextBoard, viewLeft, viewTop, true);
+            nextBoard.ageFrom(board);
+            return;
+        }
+
+        if (parallelism > 1 && parallelStepper == null) parallelStepper = new ParallelStepper(parallelism);
+
+        if (parallelStepper != null) parallelStepper.step(board, nextBoard, toroidal, rule, incrementalStepping);
+        else board.step(nextBoard, toroidal, rule, incrementalStepping);
+    }
+
+    // Swapping the boards is all it takes. What was the current generation becomes scratch space for the next
+    // call to calcNextGen().
+    public void advance () {
+        ensureNextGen();
+        nextGenIsCurrent = false;
+        recordTimeline();
+        generationCounter++;
+        recordStats();
+        if (universe != null) universe.advance();
+        else trackCycle();
+        BitBoard temp = board;
+        board = nextBoard;
+        nextBoard = temp;
+    }
+
+    // Moves the world forward by any number of generations at once. HashLife takes care of as much of it as it
+    // safely can in big jumps, and whatever is left (i.e. patterns brushing against the edge) is stepped normally.
+    // The statistics get an entry for every generation stepped and one for where each jump lands, but none for
+    // the generations jumped over, which are never worked out. See recordJump().
+    public void jumpGenerations (int generations) {
+        // Once the board repeats every 'period' generations, whole periods can be skipped without working them out
+        int period = getCyclePeriod();
+        if (period > 0 && generations >= period) {
+            int from = generationCounter, skipped = generations - generations % period;
+            generationCounter += skipped;
+            generations %= period;
+            timelineIsCurrent = false; // Same board, different generation
+            // Same cells too, but they're older now. nextBoard is part of the same cycle.
+            board.ageBy(skipped, period);
+            if (nextGenIsCurrent) nextBoard.ageBy(skipped, period);
+            recordJump(from);
+        }
+
+        if (universe != null) {
+            for (int i = 0; i < generations; i++) advance();
+            return;
+        }
+        if (hashLife == null || !hashLife.getRule().equals(rule)) hashLife = new HashLife(rule, 1 << 16);
+
+        int remaining = generations;
+        while (remaining > 0) {
+            int done = hashLife.advance(board, remaining);
+            if (done == 0) {
+                advance();
+                remaining--;
+                continue;
+            }
+            int from = generationCounter;
+            remaining -= done;
+            generationCounter += done;
+            board.forgetAges(); // Nothing in between was looked at
+            invalidateNextGen();
+            recordJump(from);
+        }
+    }
+
+    // The statistics entry for the generation a jump from 'from' landed on. Births and deaths are
+    // GenerationStats.UNKNOWN, as they'd only add up over the whole jump. The population is counted again.
+    private void recordJump (int from) {
+        stats.dropAfter(from); // Left over from before a rewind
+        population = board.population();
+        stats.record(generationCounter, population, GenerationStats.UNKNOWN, GenerationStats.UNKNOWN);
+    }
+
+    // Called just before the new generation takes over. The births and deaths were counted by the step itself.
+    private void recordStats () {
+        stats.dropAfter(generationCounter - 1); // Left over from before a rewind
+        int births, deaths;
+        if (universe != null) {
+            births = universe.getBirths();
+            deaths = universe.getDeaths();
+            population = universe.population() + births - deaths;
+        }
+        else {
+            births = nextBoard.births();
+            deaths = nextBoard.deaths();
+            if (population == -1) population = board.population();
+            population += births - deaths;
+        }
+        stats.record(generationCounter, population, births, deaths);
+    }
+
+    // Adds the generation about to take over to the timeline, as a delta from board where possible. Only on a
+    // bounded board: in infinite mode the board is just a window and the rest of the world can't be put back.
+    private void recordTimeline () {
+        if (timeline == null || universe != null) return;
+        if (!timelineIsCurrent) timeline.keyframe(generationCounter, board);
+        timeline.step(generationCounter, board, nextBoard);
+        timelineIsCurrent = true;
+    }
+
+    // Puts the board back to any generation the timeline still holds. That's usually an earlier one, but after
+    // rewinding the later ones are still there to scrub forward to, until the board is edited or advanced from
+    // the earlier one. Returns false, changing nothing, if the generation isn't held.
+    public boolean rewindTo (int generation) {
+        if (timeline == null || universe != null || !timeline.restore(generation, board)) return false;
+        invalidateNextGen();
+        generationCounter = generation;
+        timelineIsCurrent = true;
+        return true;
+    }
+
+    // Brings boardHash forward to nextBoard using only the cells that flipped, and shows it to the cycle detector.
+    // Not done in infinite mode, where the board is only a window and a pattern can leave it and come back.
+    private void trackCycle () {
+        if (!boardHashIsCurrent) {
+            boardHash = board.hash();
+            boardHashIsCurrent = true;
+        }
+        boardHash ^= board.hashChange(nextBoard);
+        cycleDetector.record(boardHash);
+    }
+
+    // The period the board has settled into: 1 when nothing changes any more, 2 for blinkers and so on. 0 if it
+    // hasn't settled (yet).
+    public int getCyclePeriod () {
+        return cycleDetector.getPeriod();
+    }
+
+    // Live cells in the whole world, not just the window
+    public int getPopulation () {
+        if (universe != null) return universe.population();
+        if (population == -1) population = board.population();
+        return population;
+    }
+
+    public GenerationStats getStats () {
+        return stats;
+    }
+
+    // Writes the recorded statistics to a CSV file
+    public void exportStats (File file) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            stats.writeCsv(out.getChannel());
+        } finally {
+            out.close();
+        }
+    }
+
+    // Turns the world 90 degrees. See BitBoard.rotated().
+    public void rotate (boolean clockwise) {
+        if (universe != null) universe.rotate(clockwise, viewLeft, viewTop, board.rows, board.cols);
+        board = board.rotated(clockwise);
+        nextBoard = nextBoard.rotated(clockwise);
+        invalidateNextGen();
+        if (timeline != null) timeline.clear(); // The past is the wrong way round now
+    }
+
+    // Flips the world left to right or top to bottom. See BitBoard.mirrored().
+    public void mirror (boolean leftRight) {
+        if (universe != null) universe.mirror(leftRight, viewLeft, viewTop, board.rows, board.cols);
+        board = board.mirrored(leftRight);
+        nextBoard = new BitBoard(board.rows, board.cols);
+        invalidateNextGen();
+        if (timeline != null) timeline.clear();
+    }
+
+    // Moves everything down and right by the given number of cells (up and left when negative). On a toroidal
+    // board what goes off one edge comes back on the other, on a flat one it's lost. In infinite mode nothing is
+    // lost: the window moves the other way instead.
+    public void shift (int down, int right) {
+        if (universe != null) {
+            viewLeft -= right;
+            viewTop -= down;
+            universe.copyWindowTo(board, viewLeft, viewTop, false);
+        }
+        else board = board.shifted(down, right, toroidal);
+        nextBoard = new BitBoard(board.rows, board.cols);
+        invalidateNextGen();
+        if (timeline != null) timeline.clear();
+    }
+
+    // How far shift() would have to move things to put the pattern in the middle of the board, as {down, right}.
+    // In infinite mode that's the whole pattern, not just what's in the window. {0, 0} if there's nothing alive.
+    public int[] centringShift () {
+        long top, left, bottom, right;
+        if (universe != null) {
+            long[] cells = universe.liveCells();
+            if (cells.length == 0) return new int[] {0, 0};
+            top = left = Long.MAX_VALUE;
+            bottom = right = Long.MIN_VALUE;
+            for (long cell : cells) {
+                top = Math.min(top, SparseUniverse.unpackY(cell) - viewTop);
+                bottom = Math.max(bottom, SparseUniverse.unpackY(cell) - viewTop);
+                left = Math.min(left, SparseUniverse.unpackX(cell) - viewLeft);
+                right = Math.max(right, SparseUniverse.unpackX(cell) - viewLeft);
+            }
+        }
+        else {
+            int[] bounds = board.bounds();
+            if (bounds == null) return new int[] {0, 0};
+            top = bounds[0];
+            left = bounds[1];
+            bottom = bounds[2];
+            right = bounds[3];
+        }
+        // Same space above as below, and left as right, give or take one when it doesn't split evenly
+        return new int[] {(int) ((board.rows - 1 - bottom - top) / 2), (int) ((board.cols - 1 - right - left) / 2)};
+    }
+
+    // Changes the size of the board, keeping it centred. See BitBoard.resized().
+    public void resize (int newRows, int newCols) {
+        int oldRows = board.rows, oldCols = board.cols;
+        board = board.resized(newRows, newCols);
+        nextBoard = nextBoard.resized(newRows, newCols);
+        if (universe != null) {
+            // The world stays put and the window grows or shrinks around its centre, showing whatever is there
+            viewLeft -= (newCols - oldCols) / 2;
+            viewTop -= (newRows - oldRows) / 2;
+            universe.copyWindowTo(board, viewLeft, viewTop, false);
+        }
+        invalidateNextGen();
+        if (timeline != null) timeline.clear();
+    }
+
+    // Stops any threads used for stepping. Needed before throwing the simulation away when parallelism > 1.
+    public void shutdown () {
+        if (parallelStepper != null) {
+            parallelStepper.shutdown();
+            parallelStepper = null;
+        }
+    }
+
+    // Only getters and setters after this point //
+
+    public BitBoard getBoard () {
+        return board;
+    }
+
+    public BitBoard getNextBoard () {
+        return nextBoard;
+    }
+
+    public int getRows () {
+        return board.rows;
+    }
+
+    public int getColumns () {
+        return board.cols;
+    }
+
+    // Only meaningful in infinite mode, where it is the whole world
+    public SparseUniverse getUniverse () {
+        return universe;
+    }
+
+    public int getGenerationCounter () {
+        return generationCounter;
+    }
+
+    public void setGenerationCounter (int generationCounter) {
+        this.generationCounter = generationCounter;
+    }
+
+    public boolean isToroidal () {
+        return toroidal;
+    }
+
+    public void setToroidal (boolean toroidal) {
+        if (toroidal != this.toroidal) {
+            board.markAllChanged();
+            invalidateNextGen();
+        }
+        this.toroidal = toroidal;
+    }
+
+    public boolean isInfinite () {
+        return infinite;
+    }
+
+    // Switching on starts the infinite plane off with whatever is on the board. Switching off keeps only what is
+    // in the window.
+    public void setInfinite (boolean infinite) {
+        if (infinite == isInfinite()) return;
+        this.infinite = infinite;
+        if (infinite) {
+            universe = new SparseUniverse();
+            universe.loadWindowFrom(board, viewLeft, viewTop);
+        }
+        else {
+            universe = null;
+        }
+        if (timeline != null) timeline.clear();
+        board.markAllChanged();
+        invalidateNextGen();
+    }
+
+    public Rule getRule () {
+        return rule;
+    }
+
+    public void setRule (Rule rule) {
+        if (!rule.equals(this.rule)) {
+            board.markAllChanged();
+            invalidateNextGen();
+        }
+        this.rule = rule;
+    }
+
+    public long getStepPasses () {
+        return stepPasses;
+    }
+
+    public int getParallelism () {
+        return parallelism;
+    }
+
+    // The pool is rebuilt with the new number of threads on the next calcNextGen()
+    public void setParallelism (int parallelism) {
+        parallelism = Math.max(1, parallelism);
+        if (parallelism == this.parallelism) return;
+        this.parallelism = parallelism;
+        shutdown();
+    }
+
+    // null if the timeline is switched off
+    public Timeline getTimeline () {
+        return timeline;
+    }
+
+    // How much memory the timeline may use, roughly. 0 switches it off, which is the default as nothing but the
+    // app wants it.
+    public void setTimelineBytes (long bytes) {
+        timelineBytes = bytes;
+        timeline = bytes > 0 ? new Timeline(bytes) : null;
+        timelineIsCurrent = false;
+    }
+
+    public boolean isTrackingAges () {
+        return trackingAges;
+    }
+
+    // Off by default as only the app's drawing wants ages. Cells alive when it is switched on start with unknown ages.
+    public void setTrackingAges (boolean trackingAges) {
+        if (trackingAges == this.trackingAges) return;
+        this.trackingAges = trackingAges;
+        board.setTrackingAges(trackingAges);
+        invalidateNextGen(); // So nextBoard gets its ages too
+    }
+
+    public boolean isIncrementalStepping () {
+        return incrementalStepping;
+    }
+
+    public void setIncrementalStepping (boolean incrementalStepping) {
+        this.incrementalStepping = incrementalStepping;
+    }
+}
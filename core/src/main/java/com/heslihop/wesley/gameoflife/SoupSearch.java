@@ -0,0 +1,495 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/* Runs lots of random soups until they settle down and counts what is left (see Census). Each soup is a 16x16
+ * square filled in from a java.util.Random with its own seed, so any soup can be made again from its seed with
+ * soup().
+ *
+ * Soups are run on a small BitBoard, which steps a lot quicker than the infinite plane. Spaceships heading for the
+ * edge of it are counted and taken off before they get there. Anything else that gets that far moves the soup over
+ * to a SparseUniverse for the rest of its run, so nothing ever crashes into an edge.
+ *
+ * A soup has settled once its population has repeated with the same period for a few periods running. Whatever is
+ * left is then cut into objects (groups of touching cells over a whole period) and each object is run on its own
+ * until it comes back to its own shape, which says what it is:
+ *
+ *     xs<population>_<shape>   still life
+ *     xp<period>_<shape>       oscillator
+ *     xq<period>_<shape>       spaceship
+ *
+ * The shape is the same however the object is turned or mirrored and whichever phase it was caught in, so every
+ * block is counted as the same block. If an object doesn't behave on its own the soup is given some more time.
+ *
+ * Soups are handed out to a pool of threads in chunks and every chunk gets its own Census, so the threads share
+ * nothing until the end.
+ */
+
+public class SoupSearch {
+    static final int SOUP_SIZE = 16;
+    static final int BOARD_SIZE = 192; // Soups start in the middle of a board this size, 3 tiles across
+    static final int EDGE_MARGIN = 8; // How close to the edge of the board cells may get before something is done
+    static final int MAX_GENERATIONS = 10000; // Soups not settled by then are reported as unsettled
+    static final int MAX_PERIOD = 60; // Longest period looked for, for soups and single objects
+    static final int PERIODS_TO_SETTLE = 4; // How many times in a row the population has to repeat
+    static final int RETRY_GENERATIONS = 100; // How long to wait after a soup turned out not to be settled yet
+    static final int CHUNK = 64; // Soups per task
+
+    // Names of some objects everyone knows, for Conway's Life only. The keys are worked out at start up.
+    private static final Map<String, String> NAMES = new HashMap<>();
+    static {
+        name("block", "OO", "OO");
+        name("beehive", ".OO.", "O..O", ".OO.");
+        name("loaf", ".OO.", "O..O", ".O.O", "..O.");
+        name("boat", "OO.", "O.O", ".O.");
+        name("ship", "OO.", "O.O", ".OO");
+        name("tub", ".O.", "O.O", ".O.");
+        name("pond", ".OO.", "O..O", "O..O", ".OO.");
+        name("long boat", "OO..", "O.O.", ".O.O", "..O.");
+        name("barge", ".O..", "O.O.", ".O.O", "..O.");
+        name("blinker", "OOO");
+        name("toad", ".OOO", "OOO.");
+        name("beacon", "OO..", "OO..", "..OO", "..OO");
+        name("glider", ".O.", "..O", "OOO");
+        name("lightweight spaceship", ".O..O", "O....", "O...O", "OOOO.");
+    }
+
+    private final Rule rule;
+    private final double density;
+    private final int threads;
+
+    public SoupSearch (Rule rule, double density, int threads) {
+        this.rule = rule;
+        this.density = density;
+        this.threads = Math.max(1, threads);
+    }
+
+    // Runs count soups with seeds firstSeed, firstSeed + 1, ... and adds up what they settled into
+    public Census run (long firstSeed, int count) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Census>> chunks = new ArrayList<>();
+            for (int start = 0; start < count; start += CHUNK) {
+                final long from = firstSeed + start;
+                final int soups = Math.min(CHUNK, count - start);
+                chunks.add(pool.submit(new Callable<Census>() {
+                    @Override
+                    public Census call () {
+                        Census census = new Census();
+                        for (int i = 0; i < soups; i++) searchSoup(from + i, census);
+                        return census;
+                    }
+                }));
+            }
+
+            // In seed order, so the sample seeds come out the same however many threads there are
+            Census total = new Census();
+            for (Future<Census> chunk : chunks) {
+                try {
+                    total.merge(chunk.get());
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+            return total;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // The soup with the given seed, e.g. to have a closer look at one of the census' sample seeds
+    public Pattern soup (long seed) {
+        Random random = new Random(seed);
+        long[] cells = new long[SOUP_SIZE * SOUP_SIZE];
+        int n = 0;
+        for (int y = 0; y < SOUP_SIZE; y++) {
+            for (int x = 0; x < SOUP_SIZE; x++) {
+                if (random.nextDouble() < density) cells[n++] = SparseUniverse.pack(x, y);
+            }
+        }
+        return new Pattern(SOUP_SIZE, SOUP_SIZE, rule, Arrays.copyOf(cells, n));
+    }
+
+    // Runs one soup until it settles and counts its objects into census
+    void searchSoup (long seed, Census census) {
+        BitBoard board = new BitBoard(BOARD_SIZE, BOARD_SIZE), next = new BitBoard(BOARD_SIZE, BOARD_SIZE);
+        int offset = (BOARD_SIZE - SOUP_SIZE) / 2;
+        for (long cell : soup(seed).cells) {
+            board.set(offset + SparseUniverse.unpackY(cell), offset + SparseUniverse.unpackX(cell), true);
+        }
+        SparseUniverse universe = null; // Takes over once the soup has spread too far for the board
+
+        int[] populations = new int[MAX_GENERATIONS + 1];
+        int population = populations[0] = board.population();
+        int nextTry = 0, nextEdgeCheck = 0;
+        for (int gen = 1; gen <= MAX_GENERATIONS; gen++) {
+            if (universe == null) {
+                board.step(next, false, rule, true);
+                BitBoard temp = board;
+                board = next;
+                next = temp;
+
+                // Cells travel at most one cell a generation, so nothing can get near the edge before half the
+                // distance is up
+                if (gen >= nextEdgeCheck) {
+                    if (board.distanceToEdge() < EDGE_MARGIN && !removeEscapingShips(board, seed, census)) {
+                        universe = new SparseUniverse();
+                        universe.loadWindowFrom(board, 0, 0);
+                    }
+                    else nextEdgeCheck = gen + board.distanceToEdge() / 2;
+                }
+            }
+            else {
+                universe.calcNext(rule);
+                universe.advance();
+            }
+            population = populations[gen] = universe == null ? board.population() : universe.population();
+            if (population == 0) break; // Nothing left to count
+
+            if (gen < nextTry) continue;
+            int period = populationPeriod(populations, gen);
+            if (period == 0) continue;
+
+            long[] cells = universe == null ? liveCells(board) : universe.liveCells();
+            List<String> objects = objectsOf(cells, period, 1);
+            if (objects == null) objects = objectsOf(cells, period, 2);
+            if (objects != null) {
+                for (String object : objects) census.add(object, seed);
+                census.soupDone();
+                return;
+            }
+            nextTry = gen + RETRY_GENERATIONS;
+        }
+
+        if (population != 0) census.addUnsettled(seed);
+        census.soupDone();
+    }
+
+    // Counts and takes off the spaceships near the edge of the board, as long as everything near the edge is a
+    // spaceship that is well clear of the rest of the soup and flying away from it. Otherwise leaves the board alone
+    // and returns false. The rest of the soup may still be busy, hence the bigger gap than objectsOf() asks for.
+    private boolean removeEscapingShips (BitBoard board, long seed, Census census) {
+        LongHashSet cells = new LongHashSet(BOARD_SIZE);
+        for (long cell : liveCells(board)) cells.add(cell);
+
+        List<long[]> ships = new ArrayList<>();
+        List<int[]> displacements = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        long[] stack = new long[cells.size()];
+        for (int i = 0; i < cells.capacity(); i++) {
+            if (!cells.isUsed(i)) continue;
+            long first = cells.keyAt(i);
+            if (edgeDistance(first) >= EDGE_MARGIN) continue;
+
+            // Everything within 2 cells of it, so it can't be touching anything else
+            long[] ship = takePiece(cells, first, 2, null, stack);
+            i = -1; // See objectsOf()
+
+            int[] displacement = new int[2];
+            String object = classify(ship, rule, displacement);
+            if (object == null || !object.startsWith("xq")) return false;
+            ships.add(ship);
+            displacements.add(displacement);
+            names.add(object);
+        }
+
+        // Whatever is left in 'cells' is the rest of the soup
+        int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE, right = Integer.MIN_VALUE, bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < cells.capacity(); i++) {
+            if (!cells.isUsed(i)) continue;
+            int x = SparseUniverse.unpackX(cells.keyAt(i)), y = SparseUniverse.unpackY(cells.keyAt(i));
+            left = Math.min(left, x);
+            right = Math.max(right, x);
+            top = Math.min(top, y);
+            bottom = Math.max(bottom, y);
+        }
+        for (int s = 0; s < ships.size(); s++) {
+            if (!leaving(ships.get(s), displacements.get(s), left, top, right, bottom, 2 * EDGE_MARGIN)) return false;
+        }
+
+        for (int s = 0; s < ships.size(); s++) {
+            census.add(names.get(s), seed);
+            for (long cell : ships.get(s)) board.set(SparseUniverse.unpackY(cell), SparseUniverse.unpackX(cell), false);
+        }
+        return true;
+    }
+
+    private static int edgeDistance (long cell) {
+        int x = SparseUniverse.unpackX(cell), y = SparseUniverse.unpackY(cell);
+        return Math.min(Math.min(x, BOARD_SIZE - 1 - x), Math.min(y, BOARD_SIZE - 1 - y));
+    }
+
+    // Whether a spaceship moving by d every period is more than gap cells off to one side of the box (left, top,
+    // right, bottom) and moving further away on that side, so it can never hit anything in it
+    private static boolean leaving (long[] ship, int[] d, int left, int top, int right, int bottom, int gap) {
+        if (left > right) return true; // Nothing there to hit
+        return (d[0] < 0 && maxX(ship) < left - gap) || (d[0] > 0 && minX(ship) > right + gap)
+                || (d[1] < 0 && maxY(ship) < top - gap) || (d[1] > 0 && minY(ship) > bottom + gap);
+    }
+
+    // The live cells of a board, packed like SparseUniverse.pack() with x the column and y the row
+    private static long[] liveCells (BitBoard board) {
+        List<Long> cells = new ArrayList<>();
+        for (int r = 0; r < board.rows; r++) {
+            for (int c = 0; c < board.cols; c++) {
+                if (board.get(r, c)) cells.add(SparseUniverse.pack(c, r));
+            }
+        }
+        long[] array = new long[cells.size()];
+        for (int i = 0; i < array.length; i++) array[i] = cells.get(i);
+        return array;
+    }
+
+    // The shortest period the population has been repeating with for the last PERIODS_TO_SETTLE periods, or 0
+    static int populationPeriod (int[] populations, int gen) {
+        search:
+        for (int p = 1; p <= MAX_PERIOD && gen >= p * (PERIODS_TO_SETTLE + 1); p++) {
+            for (int i = 0; i < p * PERIODS_TO_SETTLE; i++) {
+                if (populations[gen - i] != populations[gen - i - p]) continue search;
+            }
+            return p;
+        }
+        return 0;
+    }
+
+    // Cuts a settled pattern into objects and classifies each one. Cells belong to the same object when they are no
+    // more than 'reach' apart in any of the generations of the period. Returns null if the pattern isn't really
+    // settled after all: an object doesn't behave on its own (i.e. because it is still interacting with a
+    // neighbour), or a spaceship is still on its way towards the rest.
+    List<String> objectsOf (long[] cells, int period, int reach) {
+        // Everything that is alive at some point during the period, so an oscillator is one piece in every phase
+        LongHashSet everywhere = new LongHashSet(cells.length * 2);
+        SparseUniverse copy = new SparseUniverse();
+        for (long cell : cells) copy.set(SparseUniverse.unpackX(cell), SparseUniverse.unpackY(cell), true);
+        for (int g = 0; g < period; g++) {
+            for (long cell : copy.liveCells()) everywhere.add(cell);
+            copy.calcNext(rule);
+            copy.advance();
+        }
+
+        LongHashSet current = new LongHashSet(cells.length);
+        for (long cell : cells) current.add(cell);
+
+        List<String> objects = new ArrayList<>();
+        List<long[]> ships = new ArrayList<>();
+        List<int[]> displacements = new ArrayList<>();
+        // Bounding box of everything that isn't going anywhere
+        int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE, right = Integer.MIN_VALUE, bottom = Integer.MIN_VALUE;
+
+        long[] stack = new long[everywhere.size()];
+        for (int i = 0; i < everywhere.capacity(); i++) {
+            if (!everywhere.isUsed(i)) continue;
+            long[] piece = takePiece(everywhere, everywhere.keyAt(i), reach, current, stack);
+            i = -1; // Removing from the table moves entries around, so start the scan again
+
+            if (piece.length == 0) return null; // A piece that is only alive in other phases can't be on its own
+            int[] displacement = new int[2];
+            String object = classify(piece, rule, displacement);
+            if (object == null) return null;
+            objects.add(object);
+
+            if (displacement[0] != 0 || displacement[1] != 0) {
+                ships.add(piece);
+                displacements.add(displacement);
+            }
+            else {
+                left = Math.min(left, minX(piece));
+                top = Math.min(top, minY(piece));
+                right = Math.max(right, maxX(piece));
+                bottom = Math.max(bottom, maxY(piece));
+            }
+        }
+
+        // A spaceship is gone for good once it is off to one side of everything else and moving further that way
+        for (int s = 0; s < ships.size(); s++) {
+            if (!leaving(ships.get(s), displacements.get(s), left, top, right, bottom, 2)) return null;
+        }
+        return objects;
+    }
+
+    // Takes the cells connected to 'first' (no more than 'reach' apart) out of 'cells' and returns the ones that are
+    // also in 'keep', or all of them if keep is null. stack must have room for all of cells.
+    private static long[] takePiece (LongHashSet cells, long first, int reach, LongHashSet keep, long[] stack) {
+        List<Long> piece = new ArrayList<>();
+        int top = 0;
+        stack[top++] = first;
+        cells.remove(first);
+        while (top > 0) {
+            long cell = stack[--top];
+            if (keep == null || keep.contains(cell)) piece.add(cell);
+            int x = SparseUniverse.unpackX(cell), y = SparseUniverse.unpackY(cell);
+            for (int dy = -reach; dy <= reach; dy++) {
+                for (int dx = -reach; dx <= reach; dx++) {
+                    long neighbour = SparseUniverse.pack(x + dx, y + dy);
+                    if (cells.remove(neighbour)) stack[top++] = neighbour;
+                }
+            }
+        }
+        long[] array = new long[piece.size()];
+        for (int i = 0; i < array.length; i++) array[i] = piece.get(i);
+        return array;
+    }
+
+    // Runs an object on its own until it comes back to its own shape and says what it is, see the top of the class.
+    // null if that doesn't happen within MAX_PERIOD generations or it dies.
+    static String classify (long[] cells, Rule rule) {
+        return classify(cells, rule, null);
+    }
+
+    // Same, and if displacement isn't null puts how far the object moved over one period in it, x then y
+    static String classify (long[] cells, Rule rule, int[] displacement) {
+        SparseUniverse universe = new SparseUniverse();
+        for (long cell : cells) universe.set(SparseUniverse.unpackX(cell), SparseUniverse.unpackY(cell), true);
+
+        long[] start = normalized(cells);
+        List<long[]> phases = new ArrayList<>();
+        phases.add(start);
+        for (int g = 1; g <= MAX_PERIOD; g++) {
+            universe.calcNext(rule);
+            universe.advance();
+            long[] now = universe.liveCells();
+            if (now.length == 0) return null;
+
+            long[] shape = normalized(now);
+            if (Arrays.equals(shape, start)) {
+                int dx = minX(now) - minX(cells), dy = minY(now) - minY(cells);
+                if (displacement != null) {
+                    displacement[0] = dx;
+                    displacement[1] = dy;
+                }
+                boolean moved = dx != 0 || dy != 0;
+                String prefix = moved ? "xq" + g : g == 1 ? "xs" + cells.length : "xp" + g;
+                String best = null;
+                for (long[] phase : phases) {
+                    String key = canonicalShape(phase);
+                    if (best == null || key.length() < best.length()
+                            || (key.length() == best.length() && key.compareTo(best) < 0)) best = key;
+                }
+                return prefix + "_" + best;
+            }
+            phases.add(shape);
+        }
+        return null;
+    }
+
+    // The cells moved so the bounding box starts at (0, 0), in sorted order so shapes can be compared
+    private static long[] normalized (long[] cells) {
+        int left = minX(cells), top = minY(cells);
+        long[] moved = new long[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            moved[i] = SparseUniverse.pack(SparseUniverse.unpackX(cells[i]) - left, SparseUniverse.unpackY(cells[i]) - top);
+        }
+        Arrays.sort(moved);
+        return moved;
+    }
+
+    private static int minX (long[] cells) {
+        int min = Integer.MAX_VALUE;
+        for (long cell : cells) min = Math.min(min, SparseUniverse.unpackX(cell));
+        return min;
+    }
+
+    private static int minY (long[] cells) {
+        int min = Integer.MAX_VALUE;
+        for (long cell : cells) min = Math.min(min, SparseUniverse.unpackY(cell));
+        return min;
+    }
+
+    private static int maxX (long[] cells) {
+        int max = Integer.MIN_VALUE;
+        for (long cell : cells) max = Math.max(max, SparseUniverse.unpackX(cell));
+        return max;
+    }
+
+    private static int maxY (long[] cells) {
+        int max = Integer.MIN_VALUE;
+        for (long cell : cells) max = Math.max(max, SparseUniverse.unpackY(cell));
+        return max;
+    }
+
+    // Writes a shape down the same way whichever of its 8 rotations and reflections it is in: each of them is
+    // written as rows of hex digits (4 cells a digit, leftmost cell in the lowest bit) separated by dots, and the
+    // shortest, then alphabetically first, is the one used. A block is "3.3".
+    static String canonicalShape (long[] cells) {
+        String best = null;
+        long[] turned = new long[cells.length];
+        for (int orientation = 0; orientation < 8; orientation++) {
+            for (int i = 0; i < cells.length; i++) {
+                int x = SparseUniverse.unpackX(cells[i]), y = SparseUniverse.unpackY(cells[i]);
+                if ((orientation & 4) != 0) {
+                    int temp = x;
+                    x = y;
+                    y = temp;
+                }
+                if ((orientation & 1) != 0) x = -x;
+                if ((orientation & 2) != 0) y = -y;
+                turned[i] = SparseUniverse.pack(x, y);
+            }
+            String key = shapeString(normalized(turned));
+            if (best == null || key.length() < best.length()
+                    || (key.length() == best.length() && key.compareTo(best) < 0)) best = key;
+        }
+        return best;
+    }
+
+    private static String shapeString (long[] normalized) {
+        int width = 0, height = 0;
+        for (long cell : normalized) {
+            width = Math.max(width, SparseUniverse.unpackX(cell) + 1);
+            height = Math.max(height, SparseUniverse.unpackY(cell) + 1);
+        }
+        int[][] digits = new int[height][(width + 3) / 4];
+        for (long cell : normalized) {
+            int x = SparseUniverse.unpackX(cell);
+            digits[SparseUniverse.unpackY(cell)][x / 4] |= 1 << (x % 4);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int r = 0; r < height; r++) {
+            if (r > 0) sb.append('.');
+            int last = digits[r].length - 1;
+            while (last > 0 && digits[r][last] == 0) last--; // Empty cells at the end of a row don't count
+            for (int d = 0; d <= last; d++) sb.append(Character.forDigit(digits[r][d], 16));
+        }
+        return sb.toString();
+    }
+
+    // For the census. null if it isn't one of the well known ones.
+    static String nameOf (String object) {
+        return NAMES.get(object);
+    }
+
+    private static void name (String name, String... rows) {
+        List<Long> cells = new ArrayList<>();
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < rows[y].length(); x++) {
+                if (rows[y].charAt(x) == 'O') cells.add(SparseUniverse.pack(x, y));
+            }
+        }
+        long[] array = new long[cells.size()];
+        for (int i = 0; i < array.length; i++) array[i] = cells.get(i);
+        NAMES.put(classify(array, Rule.CONWAY), name);
+    }
+
+    public Rule getRule () {
+        return rule;
+    }
+
+    public double getDensity () {
+        return density;
+    }
+
+    public int getThreads () {
+        return threads;
+    }
+}
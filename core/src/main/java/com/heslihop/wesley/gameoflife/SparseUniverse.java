@@ -0,0 +1,168 @@
+package com.heslihop.wesley.gameoflife;
+
+/* An unbounded world. Only live cells are stored, as packed (x, y) coordinates in a LongHashSet, so memory and
+ * stepping time depend on the population and not on any board size. Patterns never fall off an edge because there
+ * isn't one.
+ *
+ * Stepping goes through the live cells only: each one adds 1 to the neighbour count of the 8 cells around it, and
+ * then every cell that got a count is checked against the rule. Cells nobody counted have 0 neighbours, and rules
+ * that give birth on 0 (B0) would fill the whole infinite plane, so such births are ignored here.
+ *
+ * The screen shows a window onto this world, copied into a BitBoard with copyWindowTo().
+ */
+
+public class SparseUniverse {
+    private LongHashSet live = new LongHashSet(), next = new LongHashSet();
+    private final LongIntMap neighbourCounts = new LongIntMap(64);
+    private int births, deaths; // In the generation worked out by the last calcNext()
+
+    static long pack (long x, long y) {
+        return (x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    static int unpackX (long packed) {
+        return (int) (packed >> 32);
+    }
+
+    static int unpackY (long packed) {
+        return (int) packed;
+    }
+
+    public boolean get (long x, long y) {
+        return live.contains(pack(x, y));
+    }
+
+    public void set (long x, long y, boolean alive) {
+        if (alive) live.add(pack(x, y));
+        else live.remove(pack(x, y));
+    }
+
+    public int population () {
+        return live.size();
+    }
+
+    public void clear () {
+        live.clear();
+    }
+
+    // Every live cell, packed the same way as pack(). In no particular order.
+    public long[] liveCells () {
+        long[] cells = new long[live.size()];
+        int n = 0;
+        for (int i = 0; i < live.capacity(); i++) {
+            if (live.isUsed(i)) cells[n++] = live.keyAt(i);
+        }
+        return cells;
+    }
+
+    // Works out the next generation and holds on to it until advance() is called
+    public void calcNext (Rule rule) {
+        neighbourCounts.clear();
+        for (int i = 0; i < live.capacity(); i++) {
+            if (!live.isUsed(i)) continue;
+            long cell = live.keyAt(i);
+            int x = unpackX(cell), y = unpackY(cell);
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    if (dx != 0 || dy != 0) neighbourCounts.increment(pack(x + dx, y + dy));
+                }
+            }
+        }
+
+        next.clear();
+        births = 0;
+        int survivors = 0;
+        for (int i = 0; i < neighbourCounts.capacity(); i++) {
+            if (!neighbourCounts.isUsed(i)) continue;
+            long cell = neighbourCounts.keyAt(i);
+            boolean alive = live.contains(cell);
+            if (rule.nextState(alive, neighbourCounts.valueAt(i))) {
+                next.add(cell);
+                if (alive) survivors++;
+                else births++;
+            }
+        }
+
+        // Live cells with no neighbours at all never made it into neighbourCounts
+        if (rule.nextState(true, 0)) {
+            for (int i = 0; i < live.capacity(); i++) {
+                if (live.isUsed(i) && neighbourCounts.get(live.keyAt(i)) == 0) {
+                    next.add(live.keyAt(i));
+                    survivors++;
+                }
+            }
+        }
+        deaths = live.size() - survivors;
+    }
+
+    public int getBirths () {
+        return births;
+    }
+
+    public int getDeaths () {
+        return deaths;
+    }
+
+    // Makes the generation worked out by calcNext() the current one
+    public void advance () {
+        LongHashSet temp = live;
+        live = next;
+        next = temp;
+    }
+
+    // Copies the rectangle with top left corner (left, top) into the board, current or next generation
+    public void copyWindowTo (BitBoard board, long left, long top, boolean nextGeneration) {
+        LongHashSet cells = nextGeneration ? next : live;
+        board.clear();
+
+        // Whichever is smaller: going through the live cells, or looking up every cell of the window
+        if (cells.size() < (long) board.rows * board.cols) {
+            for (int i = 0; i < cells.capacity(); i++) {
+                if (!cells.isUsed(i)) continue;
+                long r = unpackY(cells.keyAt(i)) - top, c = unpackX(cells.keyAt(i)) - left;
+                if (r >= 0 && r < board.rows && c >= 0 && c < board.cols) board.set((int) r, (int) c, true);
+            }
+        }
+        else {
+            for (int r = 0; r < board.rows; r++) {
+                for (int c = 0; c < board.cols; c++) {
+                    if (cells.contains(pack(left + c, top + r))) board.set(r, c, true);
+                }
+            }
+        }
+    }
+
+    // Replaces whatever is in the window with the contents of the board
+    public void loadWindowFrom (BitBoard board, long left, long top) {
+        for (int r = 0; r < board.rows; r++) {
+            for (int c = 0; c < board.cols; c++) {
+                set(left + c, top + r, board.get(r, c));
+            }
+        }
+    }
+
+    // Flips the whole world the same way BitBoard.mirrored() flips a rows x cols window at (left, top)
+    public void mirror (boolean leftRight, long left, long top, int rows, int cols) {
+        next.clear();
+        for (int i = 0; i < live.capacity(); i++) {
+            if (!live.isUsed(i)) continue;
+            long x = unpackX(live.keyAt(i)) - left, y = unpackY(live.keyAt(i)) - top;
+            if (leftRight) next.add(pack(left + cols - 1 - x, top + y));
+            else next.add(pack(left + x, top + rows - 1 - y));
+        }
+        advance();
+    }
+
+    // Turns the whole world 90 degrees the same way BitBoard.rotated() turns a rows x cols window at (left, top),
+    // so the window keeps showing the same cells after a screen rotation.
+    public void rotate (boolean clockwise, long left, long top, int rows, int cols) {
+        next.clear();
+        for (int i = 0; i < live.capacity(); i++) {
+            if (!live.isUsed(i)) continue;
+            long x = unpackX(live.keyAt(i)) - left, y = unpackY(live.keyAt(i)) - top;
+            if (clockwise) next.add(pack(left + rows - 1 - y, top + x));
+            else next.add(pack(left + y, top + cols - 1 - x));
+        }
+        advance();
+    }
+}
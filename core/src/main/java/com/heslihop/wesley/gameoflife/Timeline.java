@@ -0,0 +1,231 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/* The recent past of the board, so it can be rewound or scrubbed through without running it all again from the
+ * last save.
+ *
+ * Generations are kept in segments. A segment starts with a keyframe, a full copy of the board's tiles, followed by
+ * up to KEYFRAME_INTERVAL - 1 deltas, one per generation. A delta holds only the words that changed, XORed with what
+ * they were the generation before, and is found using the tiles' changed flags (see BitBoard), so a board that has
+ * mostly settled costs a few words a generation. Getting any generation back means copying its segment's keyframe
+ * and XORing the deltas in one after the other, never more than KEYFRAME_INTERVAL - 1 of them.
+ *
+ * Everything held is kept under maxBytes by dropping whole segments, oldest first. The sizes are estimates of what
+ * the arrays take up, not exact. The newest segment always stays, however big it is.
+ *
+ * Not thread safe. Simulation records into it as it advances.
+ */
+
+public class Timeline {
+    public static final int KEYFRAME_INTERVAL = 32;
+    // Rough sizes in bytes: an array header, a tile, and a word of a delta (its position and XOR)
+    private static final int ARRAY_BYTES = 16, TILE_BYTES = BitBoard.TILE_SIZE * 8 + ARRAY_BYTES, DELTA_WORD_BYTES = 12;
+
+    private static class Segment {
+        final int firstGeneration;
+        final long[][] keyframe; // Tiles of the first generation, null for empty ones like in BitBoard
+        // One entry per generation after the first. A position is (tile index << 6 | row in tile), and the long at
+        // the same index in changes is what that word has to be XORed with.
+        final List<int[]> positions = new ArrayList<>();
+        final List<long[]> changes = new ArrayList<>();
+        long bytes;
+
+        Segment (int firstGeneration, long[][] keyframe) {
+            this.firstGeneration = firstGeneration;
+            this.keyframe = keyframe;
+        }
+
+        int lastGeneration () {
+            return firstGeneration + positions.size();
+        }
+    }
+
+    private final long maxBytes;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private long bytes = 0;
+    private int rows = -1, cols = -1; // Size of the board everything held came from
+    // Where a delta is put together before being copied out at its real size
+    private int[] positionBuffer = new int[256];
+    private long[] changeBuffer = new long[256];
+
+    public Timeline (long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // Starts a new segment with a full copy of the board as generation 'generation'. Anything held for that
+    // generation or later is dropped, as is everything if the board isn't the size it was.
+    public void keyframe (int generation, BitBoard board) {
+        if (board.rows != rows || board.cols != cols) {
+            clear();
+            rows = board.rows;
+            cols = board.cols;
+        }
+        dropFrom(generation);
+
+        long[][] tiles = new long[board.tiles.length][];
+        long size = ARRAY_BYTES + tiles.length * 4;
+        for (int i = 0; i < tiles.length; i++) {
+            if (board.tiles[i] == null) continue;
+            tiles[i] = board.tiles[i].clone();
+            size += TILE_BYTES;
+        }
+        Segment segment = new Segment(generation, tiles);
+        segment.bytes = size;
+        segments.addLast(segment);
+        bytes += size;
+        evict();
+    }
+
+    // Records 'after', stepped from 'before', as generation + 1. 'before' has to be generation 'generation' as it
+    // was recorded. Anything held past it, i.e. from before a rewind, is dropped, as that future won't happen now.
+    public void step (int generation, BitBoard before, BitBoard after) {
+        if (!contains(generation) || before.rows != rows || before.cols != cols) {
+            keyframe(generation + 1, after); // Nothing to build on
+            return;
+        }
+        dropFrom(generation + 1);
+        Segment last = segments.peekLast();
+        if (last.positions.size() >= KEYFRAME_INTERVAL - 1) {
+            keyframe(generation + 1, after);
+            return;
+        }
+
+        // Only tiles the step flagged as changed can hold a change
+        int n = 0;
+        for (int i = 0; i < after.tiles.length; i++) {
+            if (!after.changed[i]) continue;
+            long[] was = before.tiles[i], now = after.tiles[i];
+            if (was == null && now == null) continue;
+            for (int row = 0; row < BitBoard.TILE_SIZE; row++) {
+                long change = (was == null ? 0 : was[row]) ^ (now == null ? 0 : now[row]);
+                if (change == 0) continue;
+                if (n == positionBuffer.length) {
+                    positionBuffer = Arrays.copyOf(positionBuffer, n * 2);
+                    changeBuffer = Arrays.copyOf(changeBuffer, n * 2);
+                }
+                positionBuffer[n] = i << 6 | row;
+                changeBuffer[n++] = change;
+            }
+        }
+        last.positions.add(Arrays.copyOf(positionBuffer, n));
+        last.changes.add(Arrays.copyOf(changeBuffer, n));
+        long size = 2 * ARRAY_BYTES + n * DELTA_WORD_BYTES;
+        last.bytes += size;
+        bytes += size;
+        evict();
+    }
+
+    // Puts generation 'generation' on the board, which must be the size the timeline was recorded at. Returns
+    // false, leaving the board alone, if that generation isn't held.
+    public boolean restore (int generation, BitBoard board) {
+        if (board.rows != rows || board.cols != cols) return false;
+        Segment segment = find(generation);
+        if (segment == null) return false;
+
+        long[][] tiles = board.tiles;
+        for (int i = 0; i < tiles.length; i++) {
+            long[] tile = segment.keyframe[i];
+            if (tile == null) tiles[i] = null;
+            else if (tiles[i] == null) tiles[i] = tile.clone();
+            else System.arraycopy(tile, 0, tiles[i], 0, BitBoard.TILE_SIZE);
+        }
+        for (int d = 0; d < generation - segment.firstGeneration; d++) {
+            int[] positions = segment.positions.get(d);
+            long[] changes = segment.changes.get(d);
+            for (int k = 0; k < positions.length; k++) {
+                int i = positions[k] >>> 6;
+                if (tiles[i] == null) tiles[i] = new long[BitBoard.TILE_SIZE];
+                tiles[i][positions[k] & 63] ^= changes[k];
+            }
+        }
+
+        // Tiles everything in has died are let go, the same as stepping does
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] != null && isEmpty(tiles[i])) tiles[i] = null;
+        }
+        board.markAllChanged();
+        board.forgetAges();
+        return true;
+    }
+
+    private static boolean isEmpty (long[] tile) {
+        for (long word : tile) {
+            if (word != 0) return false;
+        }
+        return true;
+    }
+
+    private Segment find (int generation) {
+        for (Iterator<Segment> it = segments.descendingIterator(); it.hasNext(); ) {
+            Segment segment = it.next();
+            if (generation > segment.lastGeneration()) return null;
+            if (generation >= segment.firstGeneration) return segment;
+        }
+        return null;
+    }
+
+    public boolean contains (int generation) {
+        return find(generation) != null;
+    }
+
+    // Drops every generation from 'generation' on
+    private void dropFrom (int generation) {
+        while (!segments.isEmpty()) {
+            Segment last = segments.peekLast();
+            if (last.lastGeneration() < generation) return;
+            if (last.firstGeneration >= generation) {
+                segments.removeLast();
+                bytes -= last.bytes;
+                continue;
+            }
+            while (last.lastGeneration() >= generation) {
+                int d = last.positions.size() - 1;
+                long size = 2 * ARRAY_BYTES + last.positions.get(d).length * DELTA_WORD_BYTES;
+                last.positions.remove(d);
+                last.changes.remove(d);
+                last.bytes -= size;
+                bytes -= size;
+            }
+            return;
+        }
+    }
+
+    private void evict () {
+        while (bytes > maxBytes && segments.size() > 1) {
+            bytes -= segments.removeFirst().bytes;
+        }
+    }
+
+    public void clear () {
+        segments.clear();
+        bytes = 0;
+    }
+
+    public boolean isEmpty () {
+        return segments.isEmpty();
+    }
+
+    // The oldest generation held. Only meaningful if !isEmpty().
+    public int getOldestGeneration () {
+        return segments.peekFirst().firstGeneration;
+    }
+
+    // The newest generation held. Only meaningful if !isEmpty().
+    public int getNewestGeneration () {
+        return segments.peekLast().lastGeneration();
+    }
+
+    // Roughly how much memory everything held takes up
+    public long getBytes () {
+        return bytes;
+    }
+
+    public long getMaxBytes () {
+        return maxBytes;
+    }
+}
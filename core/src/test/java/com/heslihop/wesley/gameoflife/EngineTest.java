@@ -0,0 +1,233 @@
+package com.heslihop.wesley.gameoflife;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/* Every way the engine has of getting from one generation to the next, checked against ReferenceStepper: the word
+ * parallel step with and without incremental stepping, parallel stripes, HashLife jumps, the infinite plane,
+ * cycle skipping and rewinding the timeline. Sizes are picked to not be multiples of 64 so the edges of the words
+ * and tiles get tested too.
+ */
+
+public class EngineTest {
+    private static final int[][] SIZES = {{1, 1}, {3, 5}, {17, 70}, {64, 64}, {65, 129}, {100, 200}};
+
+    private static Simulation simulationFor (ReferenceStepper reference) {
+        Simulation simulation = new Simulation(reference.rows, reference.cols);
+        simulation.setToroidal(reference.toroidal);
+        reference.copyTo(simulation);
+        return simulation;
+    }
+
+    @Test
+    public void stepMatchesReference () {
+        Random random = new Random(1);
+        for (int[] size : SIZES) {
+            for (boolean toroidal : new boolean[] {true, false}) {
+                for (boolean incremental : new boolean[] {true, false}) {
+                    ReferenceStepper reference = new ReferenceStepper(size[0], size[1], toroidal);
+                    reference.randomize(random, 0.35f);
+                    Simulation simulation = simulationFor(reference);
+                    simulation.setIncrementalStepping(incremental);
+
+                    String what = size[0] + "x" + size[1] + (toroidal ? " toroidal" : " flat") + (incremental ? " incremental" : "");
+                    for (int generation = 1; generation <= 40; generation++) {
+                        // An edit now and then, which incremental stepping has to notice
+                        if (generation % 10 == 0) {
+                            int r = random.nextInt(size[0]), c = random.nextInt(size[1]);
+                            reference.cells[r][c] = !reference.cells[r][c];
+                            simulation.setAlive(r * size[1] + c, reference.cells[r][c]);
+                        }
+                        reference.step();
+                        simulation.advance();
+                        reference.assertSame(what + ", generation " + generation, simulation.getBoard());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void otherRulesMatchReference () {
+        String[][] rules = {{"B36/S23", "36", "23"}, {"B2/S", "2", ""}, {"b3678/s34678", "3678", "34678"},
+                {"S1357/B1357", "1357", "1357"}, {"B3/S012345678", "3", "012345678"}};
+        Random random = new Random(2);
+        for (String[] rule : rules) {
+            ReferenceStepper reference = new ReferenceStepper(70, 90, true, rule[1], rule[2]);
+            reference.randomize(random, 0.4f);
+            Simulation simulation = simulationFor(reference);
+            simulation.setRule(Rule.parse(rule[0]));
+            for (int generation = 1; generation <= 30; generation++) {
+                reference.step();
+                simulation.advance();
+                reference.assertSame(rule[0] + ", generation " + generation, simulation.getBoard());
+            }
+        }
+    }
+
+    @Test
+    public void ruleStringsParse () {
+        assertSame(Rule.CONWAY, Rule.parse("B3/S23"));
+        assertSame(Rule.HIGHLIFE, Rule.parse(" s23/b36 "));
+        assertEquals("B1357/S02", Rule.parse("B7531/S20").toString());
+        for (String bad : new String[] {"B3", "B3/S2/S3", "B39/S23", "X3/S23", "B3/B23", null}) {
+            try {
+                Rule.parse(bad);
+                fail("Parsed " + bad);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void parallelStripesMatchReference () {
+        Random random = new Random(3);
+        for (boolean toroidal : new boolean[] {true, false}) {
+            // Big enough to be split up however low ParallelStepper's threshold is
+            ReferenceStepper reference = new ReferenceStepper(300, 530, toroidal);
+            reference.randomize(random, 0.3f);
+            Simulation simulation = simulationFor(reference);
+            simulation.setParallelism(4);
+            try {
+                for (int generation = 1; generation <= 15; generation++) {
+                    reference.step();
+                    simulation.advance();
+                    reference.assertSame((toroidal ? "toroidal" : "flat") + ", generation " + generation, simulation.getBoard());
+                }
+            } finally {
+                simulation.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void hashLifeJumpsMatchReference () {
+        Random random = new Random(4);
+        for (boolean toroidal : new boolean[] {true, false}) {
+            // A soup in the middle of a big board, so there's room for HashLife to jump before it reaches an edge
+            ReferenceStepper reference = new ReferenceStepper(256, 300, toroidal);
+            reference.randomize(random, 0.4f, 108, 130, 40, 40);
+            Simulation simulation = simulationFor(reference);
+            int generation = 0;
+            for (int jump : new int[] {64, 100, 7, 200}) {
+                for (int i = 0; i < jump; i++) reference.step();
+                simulation.jumpGenerations(jump);
+                generation += jump;
+                assertEquals(generation, simulation.getGenerationCounter());
+                reference.assertSame((toroidal ? "toroidal" : "flat") + ", generation " + generation, simulation.getBoard());
+            }
+            // Most of it really was jumped rather than stepped
+            assertTrue(simulation.getStepPasses() + " steps", simulation.getStepPasses() < generation / 2);
+        }
+    }
+
+    @Test
+    public void infinitePlaneMatchesReference () {
+        // The plane is stood in for by a reference board with a margin around the window that nothing can cross
+        // in the generations run
+        int generations = 40, margin = generations + 2, rows = 50, cols = 70;
+        ReferenceStepper reference = new ReferenceStepper(rows + 2 * margin, cols + 2 * margin, false);
+        reference.randomize(new Random(5), 0.4f, margin, margin, rows, cols);
+
+        Simulation simulation = new Simulation(rows, cols);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                if (reference.cells[margin + r][margin + c]) simulation.setAlive(r * cols + c, true);
+            }
+        }
+        simulation.setInfinite(true);
+
+        for (int generation = 1; generation <= generations; generation++) {
+            reference.step();
+            simulation.advance();
+            reference.assertSame("window, generation " + generation, simulation.getBoard(), margin, margin);
+        }
+        int population = 0;
+        for (boolean[] row : reference.cells) {
+            for (boolean alive : row) if (alive) population++;
+        }
+        assertEquals("the whole plane", population, simulation.getPopulation());
+
+        // Moving the window shows what went off the edge
+        simulation.shift(10, 10);
+        reference.assertSame("moved window", simulation.getBoard(), margin - 10, margin - 10);
+    }
+
+    @Test
+    public void cyclesAreFoundAndSkipped () {
+        // A blinker and a block: period 2
+        ReferenceStepper reference = new ReferenceStepper(20, 30, true);
+        reference.cells[5][4] = reference.cells[5][5] = reference.cells[5][6] = true;
+        reference.cells[12][20] = reference.cells[12][21] = reference.cells[13][20] = reference.cells[13][21] = true;
+        Simulation simulation = simulationFor(reference);
+        for (int i = 0; i < 10; i++) simulation.advance();
+        assertEquals(2, simulation.getCyclePeriod());
+
+        // Skipping whole periods has to come out where stepping would
+        for (int i = 0; i < 10 + 1001; i++) reference.step();
+        simulation.jumpGenerations(1001);
+        assertEquals(10 + 1001, simulation.getGenerationCounter());
+        reference.assertSame("after skipping", simulation.getBoard());
+
+        // A glider on a 16 x 16 torus is back where it started after 64 generations
+        ReferenceStepper glider = new ReferenceStepper(16, 16, true);
+        glider.cells[0][1] = glider.cells[1][2] = glider.cells[2][0] = glider.cells[2][1] = glider.cells[2][2] = true;
+        simulation = simulationFor(glider);
+        for (int i = 0; i < 200; i++) simulation.advance();
+        assertEquals(64, simulation.getCyclePeriod());
+
+        // And something still growing hasn't settled
+        ReferenceStepper soup = new ReferenceStepper(100, 100, false);
+        soup.randomize(new Random(6), 0.4f, 45, 45, 10, 10);
+        simulation = simulationFor(soup);
+        for (int i = 0; i < 20; i++) simulation.advance();
+        assertEquals(0, simulation.getCyclePeriod());
+    }
+
+    @Test
+    public void rewindingMatchesReference () {
+        Random random = new Random(7);
+        ReferenceStepper reference = new ReferenceStepper(60, 130, true);
+        reference.randomize(random, 0.35f);
+        Simulation simulation = simulationFor(reference);
+        simulation.setTimelineBytes(1 << 20);
+
+        int generations = 150;
+        boolean[][][] past = new boolean[generations + 1][][];
+        past[0] = reference.copy();
+        for (int generation = 1; generation <= generations; generation++) {
+            reference.step();
+            simulation.advance();
+            past[generation] = reference.copy();
+        }
+
+        Timeline timeline = simulation.getTimeline();
+        int oldest = timeline.getOldestGeneration(), newest = timeline.getNewestGeneration();
+        assertTrue("holds " + oldest + " to " + newest, oldest < newest - Timeline.KEYFRAME_INTERVAL);
+        // Back and forth at random, including forward again to generations rewound past
+        for (int i = 0; i < 40; i++) {
+            int generation = oldest + random.nextInt(newest - oldest + 1);
+            assertTrue(simulation.rewindTo(generation));
+            assertEquals(generation, simulation.getGenerationCounter());
+            reference.cells = past[generation];
+            reference.assertSame("rewound to " + generation, simulation.getBoard());
+        }
+
+        // Carrying on from a rewind steps from the generation rewound to
+        int from = (oldest + newest) / 2;
+        simulation.rewindTo(from);
+        reference.cells = past[from];
+        for (int i = 0; i < 5; i++) {
+            reference.step();
+            simulation.advance();
+        }
+        reference.assertSame("5 after rewinding to " + from, simulation.getBoard());
+    }
+}
@@ -0,0 +1,100 @@
+package com.heslihop.wesley.gameoflife;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/* FramePacer against a clock that only moves when told to, fed the vsyncs of a perfect 60 Hz display unless a test
+ * says otherwise.
+ */
+
+public class FramePacerTest {
+    private static final long SECOND = 1000000000L, MILLISECOND = 1000000L;
+
+    private static class FakeClock implements Clock {
+        long now = 0;
+
+        @Override
+        public long nanoTime () {
+            return now;
+        }
+    }
+
+    private FakeClock clock;
+    private FramePacer pacer;
+
+    @Before
+    public void setUp () {
+        clock = new FakeClock();
+        pacer = new FramePacer(clock);
+        pacer.setStepsPerSecond(10);
+    }
+
+    // When the given vsync of a 60 Hz display happens
+    private static long vsync (int frame) {
+        return frame * SECOND / 60;
+    }
+
+    @Test
+    public void tenStepsASecondIsEverySixthFrame () {
+        int steps = 0;
+        for (int frame = 0; frame <= 600; frame++) {
+            int due = pacer.onFrame(vsync(frame));
+            assertEquals("frame " + frame, frame > 0 && frame % 6 == 0 ? 1 : 0, due);
+            steps += due;
+        }
+        assertEquals(100, steps);
+        assertEquals(0, pacer.getStats().getDroppedFrames());
+        assertEquals(SECOND / 60, pacer.getFrameNanos(), MILLISECOND / 10);
+    }
+
+    @Test
+    public void onlyAFewFramesAreMadeUpAfterAStall () {
+        for (int frame = 0; frame <= 30; frame++) pacer.onFrame(vsync(frame));
+        // Five seconds without a vsync, i.e. the app was in the background
+        int due = pacer.onFrame(vsync(30) + 5 * SECOND);
+        // 4 frames' worth, where the step is longer than a frame that's 4 steps
+        assertEquals(FramePacer.MAX_CATCH_UP_FRAMES, due);
+        // And it carries on at the normal rate afterwards
+        int steps = 0;
+        for (int frame = 1; frame <= 60; frame++) steps += pacer.onFrame(vsync(30) + 5 * SECOND + vsync(frame));
+        assertTrue("got " + steps, steps == 10 || steps == 9);
+    }
+
+    @Test
+    public void skippedVsyncsAreCountedAsDropped () {
+        for (int frame = 0; frame <= 30; frame++) pacer.onFrame(vsync(frame));
+        pacer.onFrame(vsync(34)); // 31, 32 and 33 never came
+        pacer.onFrame(vsync(35));
+        pacer.onFrame(vsync(37)); // 36 didn't either
+        assertEquals(4, pacer.getStats().getDroppedFrames());
+        // A late but not skipped vsync doesn't count, nor does it throw the frame period off much
+        pacer.onFrame(vsync(38) + 4 * MILLISECOND);
+        assertEquals(4, pacer.getStats().getDroppedFrames());
+        assertEquals(SECOND / 60, pacer.getFrameNanos(), MILLISECOND);
+    }
+
+    @Test
+    public void framesOnScreenAfterTheNextVsyncMissTheirDeadline () {
+        for (int frame = 0; frame <= 30; frame++) pacer.onFrame(vsync(frame));
+
+        clock.now = vsync(30) + 5 * MILLISECOND;
+        pacer.frameDrawn(vsync(30));
+        clock.now = vsync(31) + 20 * MILLISECOND;
+        pacer.frameDrawn(vsync(31));
+        clock.now = vsync(32) + 16 * MILLISECOND; // Just in time
+        pacer.frameDrawn(vsync(32));
+
+        FrameStats stats = pacer.getStats();
+        assertEquals(3, stats.getFrames());
+        assertEquals(1, stats.getMissedDeadlines());
+        long[] histogram = stats.getHistogram();
+        assertEquals(1, histogram[5]);
+        assertEquals(1, histogram[16]);
+        assertEquals(1, histogram[20]);
+        assertEquals(21, stats.getPercentileMillis(1.0)); // The end of the 20 ms bucket
+        assertEquals(20.0, stats.getWorstMillis(), 0.001);
+    }
+}
@@ -0,0 +1,128 @@
+package com.heslihop.wesley.gameoflife;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/* BitBoard's rotating, resizing, mirroring and shifting move whole words and rows about. Here they're checked
+ * against Geometry, which moves one int per cell, with each cell's value standing for whether it's alive and how old
+ * it is. Sizes are picked so rows end part way through a word.
+ */
+
+public class GeometryTest {
+    private static final int[][] SIZES = {{1, 1}, {3, 5}, {17, 70}, {64, 64}, {65, 129}, {100, 200}};
+
+    // A random board a few generations in, so the cells have different ages
+    private static BitBoard randomBoard (Random random, int rows, int cols) {
+        BitBoard board = new BitBoard(rows, cols), next = new BitBoard(rows, cols);
+        board.setTrackingAges(true);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                board.set(r, c, random.nextFloat() < 0.4f);
+            }
+        }
+        Rule rule = Rule.parse("B3/S23");
+        for (int generation = 0; generation < 5; generation++) {
+            board.step(next, true, rule, false);
+            BitBoard temp = board;
+            board = next;
+            next = temp;
+        }
+        return board;
+    }
+
+    // 0 for a dead cell, 1 + its age for a live one
+    private static int[] values (BitBoard board, int rows, int cols) {
+        int[] values = new int[rows * cols];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = board.get(i) ? 1 + board.getAge(i) : 0;
+        }
+        return values;
+    }
+
+    private static void assertMatches (String what, int[] expected, BitBoard board, int rows, int cols) {
+        int[] actual = values(board, rows, cols);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(what + " at " + (i / cols) + "," + (i % cols), expected[i], actual[i]);
+        }
+    }
+
+    @Test
+    public void rotatingMatchesGeometry () {
+        Random random = new Random(1);
+        for (int[] size : SIZES) {
+            int rows = size[0], cols = size[1];
+            BitBoard board = randomBoard(random, rows, cols);
+            for (boolean clockwise : new boolean[] {true, false}) {
+                int[] expected = Geometry.rotated(values(board, rows, cols), rows, cols, clockwise);
+                assertMatches(rows + "x" + cols + (clockwise ? " clockwise" : " anticlockwise"), expected,
+                        board.rotated(clockwise), cols, rows);
+            }
+        }
+    }
+
+    @Test
+    public void transposingTwiceChangesNothing () {
+        Random random = new Random(2);
+        long[] tile = new long[64];
+        for (int i = 0; i < 64; i++) tile[i] = random.nextLong();
+        long[] transposed = tile.clone();
+        BitBoard.transpose(transposed);
+        for (int r = 0; r < 64; r++) {
+            for (int c = 0; c < 64; c++) {
+                assertEquals((tile[r] >>> c) & 1, (transposed[c] >>> r) & 1);
+            }
+        }
+        BitBoard.transpose(transposed);
+        for (int i = 0; i < 64; i++) assertEquals(tile[i], transposed[i]);
+    }
+
+    @Test
+    public void resizingMatchesGeometry () {
+        Random random = new Random(3);
+        int[][] newSizes = {{1, 1}, {10, 3}, {40, 150}, {64, 64}, {130, 250}};
+        for (int[] size : SIZES) {
+            int rows = size[0], cols = size[1];
+            BitBoard board = randomBoard(random, rows, cols);
+            for (int[] newSize : newSizes) {
+                int[] expected = Geometry.resized(values(board, rows, cols), rows, cols, newSize[0], newSize[1], 0);
+                assertMatches(rows + "x" + cols + " to " + newSize[0] + "x" + newSize[1], expected,
+                        board.resized(newSize[0], newSize[1]), newSize[0], newSize[1]);
+            }
+        }
+    }
+
+    @Test
+    public void mirroringMatchesGeometry () {
+        Random random = new Random(4);
+        for (int[] size : SIZES) {
+            int rows = size[0], cols = size[1];
+            BitBoard board = randomBoard(random, rows, cols);
+            for (boolean leftRight : new boolean[] {true, false}) {
+                int[] expected = values(board, rows, cols);
+                Geometry.mirror(expected, rows, cols, leftRight);
+                assertMatches(rows + "x" + cols + (leftRight ? " left to right" : " top to bottom"), expected,
+                        board.mirrored(leftRight), rows, cols);
+            }
+        }
+    }
+
+    @Test
+    public void shiftingMatchesGeometry () {
+        Random random = new Random(5);
+        int[][] shifts = {{0, 0}, {1, 0}, {0, 1}, {-3, 7}, {5, -64}, {-20, 65}, {130, -250}};
+        for (int[] size : SIZES) {
+            int rows = size[0], cols = size[1];
+            BitBoard board = randomBoard(random, rows, cols);
+            for (int[] shift : shifts) {
+                for (boolean wrap : new boolean[] {true, false}) {
+                    int[] expected = Geometry.shifted(values(board, rows, cols), rows, cols, shift[0], shift[1], wrap, 0);
+                    assertMatches(rows + "x" + cols + " by " + shift[0] + "," + shift[1] + (wrap ? " wrapping" : ""),
+                            expected, board.shifted(shift[0], shift[1], wrap), rows, cols);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.heslihop.wesley.gameoflife;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/* The game done the slow and obvious way, a cell at a time on a grid of booleans, for the tests to check the real
+ * engines against. The rule is kept as plain lists of digits so it doesn't depend on Rule either.
+ */
+
+class ReferenceStepper {
+    final int rows, cols;
+    final boolean toroidal;
+    private final String births, survivals;
+    boolean[][] cells;
+
+    ReferenceStepper (int rows, int cols, boolean toroidal, String births, String survivals) {
+        this.rows = rows;
+        this.cols = cols;
+        this.toroidal = toroidal;
+        this.births = births;
+        this.survivals = survivals;
+        cells = new boolean[rows][cols];
+    }
+
+    // Conway's B3/S23
+    ReferenceStepper (int rows, int cols, boolean toroidal) {
+        this(rows, cols, toroidal, "3", "23");
+    }
+
+    // Fills the rectangle from (top, left) of the given size at random
+    void randomize (Random random, float density, int top, int left, int height, int width) {
+        for (int r = top; r < top + height; r++) {
+            for (int c = left; c < left + width; c++) {
+                cells[r][c] = random.nextFloat() < density;
+            }
+        }
+    }
+
+    void randomize (Random random, float density) {
+        randomize(random, density, 0, 0, rows, cols);
+    }
+
+    // Puts the same cells on the simulation's board
+    void copyTo (Simulation simulation) {
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                if (simulation.get(r * cols + c) != cells[r][c]) simulation.setAlive(r * cols + c, cells[r][c]);
+            }
+        }
+    }
+
+    void step () {
+        boolean[][] next = new boolean[rows][cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int neighbours = 0;
+                for (int dr = -1; dr <= 1; dr++) {
+                    for (int dc = -1; dc <= 1; dc++) {
+                        if ((dr != 0 || dc != 0) && alive(r + dr, c + dc)) neighbours++;
+                    }
+                }
+                String counts = cells[r][c] ? survivals : births;
+                next[r][c] = counts.indexOf((char) ('0' + neighbours)) >= 0;
+            }
+        }
+        cells = next;
+    }
+
+    private boolean alive (int r, int c) {
+        if (toroidal) return cells[(r + rows) % rows][(c + cols) % cols];
+        return r >= 0 && r < rows && c >= 0 && c < cols && cells[r][c];
+    }
+
+    boolean[][] copy () {
+        boolean[][] copy = new boolean[rows][];
+        for (int r = 0; r < rows; r++) copy[r] = cells[r].clone();
+        return copy;
+    }
+
+    // Checks the board holds the same cells, or the part of them from (top, left) when the board is smaller
+    void assertSame (String message, BitBoard board, int top, int left) {
+        for (int r = 0; r < board.rows; r++) {
+            for (int c = 0; c < board.cols; c++) {
+                if (board.get(r, c) != cells[top + r][left + c]) {
+                    assertEquals(message + ", cell (" + r + ", " + c + ")", cells[top + r][left + c], board.get(r, c));
+                }
+            }
+        }
+    }
+
+    void assertSame (String message, BitBoard board) {
+        assertEquals(message + ", rows", rows, board.rows);
+        assertEquals(message + ", columns", cols, board.cols);
+        assertSame(message, board, 0, 0);
+    }
+}
@@ -0,0 +1,173 @@
+package com.heslihop.wesley.gameoflife;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/* Checks that each generation is worked out once however many times it's looked at, the way the app looks at it:
+ * the simulation thread hands every generation over together with the one after it (for showNextGen), and then
+ * steps to that one. Also that jumps still leave a trace in the statistics, and that a deserialized simulation
+ * carries on the same as the original.
+ */
+
+public class SimulationTest {
+    private static Simulation randomSimulation (int rows, int cols, long seed) {
+        Simulation simulation = new Simulation(rows, cols);
+        Random random = new Random(seed);
+        for (int i = 0; i < rows * cols; i++) {
+            if (random.nextFloat() < 0.3f) simulation.setAlive(i, true);
+        }
+        return simulation;
+    }
+
+    // What SimulationThread.publish() does: make sure the next generation is there and copy both boards out
+    private static void publish (Simulation simulation, BitBoard board, BitBoard next) {
+        simulation.ensureNextGen();
+        board.copyFrom(simulation.getBoard());
+        next.copyFrom(simulation.getNextBoard());
+    }
+
+    @Test
+    public void eachGenerationIsCalculatedOnce () {
+        Simulation simulation = randomSimulation(100, 130, 1);
+        BitBoard board = new BitBoard(100, 130), next = new BitBoard(100, 130);
+
+        for (int generation = 1; generation <= 50; generation++) {
+            publish(simulation, board, next);
+            publish(simulation, board, next); // A redraw on top, i.e. after a zoom
+            simulation.advance();
+            assertEquals("after generation " + generation, generation, simulation.getStepPasses());
+        }
+    }
+
+    @Test
+    public void anEditCostsOneMorePass () {
+        Simulation simulation = randomSimulation(64, 64, 2);
+        BitBoard board = new BitBoard(64, 64), next = new BitBoard(64, 64);
+
+        publish(simulation, board, next);
+        simulation.setAlive(0, !simulation.get(0));
+        simulation.setAlive(1, !simulation.get(1));
+        publish(simulation, board, next);
+        simulation.advance();
+        publish(simulation, board, next);
+        simulation.advance();
+        assertEquals(3, simulation.getStepPasses());
+    }
+
+    @Test
+    public void jumpsAreRecordedInTheStats () {
+        // A glider on an empty board, far from the edges, so HashLife can jump it in one go
+        Simulation simulation = new Simulation(256, 256);
+        int[][] glider = {{0, 1}, {1, 2}, {2, 0}, {2, 1}, {2, 2}};
+        for (int[] cell : glider) simulation.setAlive((100 + cell[0]) * 256 + 100 + cell[1], true);
+        simulation.advance();
+        simulation.jumpGenerations(64);
+
+        GenerationStats stats = simulation.getStats();
+        int last = stats.size() - 1;
+        assertEquals(65, simulation.getGenerationCounter());
+        assertEquals(65, stats.getGeneration(last));
+        assertEquals(5, stats.getPopulation(last));
+        for (int i = 1; i <= last; i++) {
+            assertTrue(stats.getGeneration(i) > stats.getGeneration(i - 1));
+            if (stats.getGeneration(i) > stats.getGeneration(i - 1) + 1) {
+                assertEquals(GenerationStats.UNKNOWN, stats.getBirths(i));
+            }
+        }
+        assertTrue("at least one jump", last < 64);
+    }
+
+    @Test
+    public void skippedCyclesAreRecordedInTheStats () {
+        // A blinker, period 2
+        Simulation simulation = new Simulation(16, 16);
+        for (int c = 6; c <= 8; c++) simulation.setAlive(7 * 16 + c, true);
+        for (int generation = 0; generation < 10; generation++) simulation.advance();
+        assertEquals(2, simulation.getCyclePeriod());
+
+        simulation.jumpGenerations(1000);
+        GenerationStats stats = simulation.getStats();
+        assertEquals(1010, stats.getGeneration(stats.size() - 1));
+        assertEquals(3, stats.getPopulation(stats.size() - 1));
+        assertEquals(GenerationStats.UNKNOWN, stats.getBirths(stats.size() - 1));
+    }
+
+    private static Simulation roundTrip (Simulation simulation) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(simulation);
+        out.close();
+        return (Simulation) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    @Test
+    public void aDeserializedSimulationCarriesOn () throws Exception {
+        Simulation original = randomSimulation(70, 90, 3);
+        original.setTimelineBytes(1 << 20);
+        original.setTrackingAges(true);
+        for (int generation = 0; generation < 5; generation++) original.advance();
+        Simulation copy = roundTrip(original);
+
+        for (Simulation simulation : new Simulation[] {original, copy}) {
+            simulation.setAlive(0, !simulation.get(0));
+            for (int generation = 0; generation < 20; generation++) simulation.advance();
+        }
+        assertEquals(original.getGenerationCounter(), copy.getGenerationCounter());
+        assertEquals(original.getPopulation(), copy.getPopulation());
+        for (int i = 0; i < 70 * 90; i++) assertEquals("cell " + i, original.get(i), copy.get(i));
+        assertEquals(20, copy.getStats().size());
+        assertTrue(copy.rewindTo(copy.getGenerationCounter() - 10));
+    }
+
+    // Only the window is written out in infinite mode, so that's all that has to match
+    @Test
+    public void aDeserializedInfiniteSimulationKeepsItsWindow () throws Exception {
+        Simulation original = randomSimulation(70, 90, 4);
+        original.setInfinite(true);
+        for (int generation = 0; generation < 5; generation++) original.advance();
+        Simulation copy = roundTrip(original);
+
+        assertTrue(copy.isInfinite());
+        for (int i = 0; i < 70 * 90; i++) assertEquals("cell " + i, original.get(i), copy.get(i));
+        copy.setAlive(0, !copy.get(0));
+        copy.advance();
+        assertEquals(original.getGenerationCounter() + 1, copy.getGenerationCounter());
+    }
+
+    // Skipping periods of a cycle has to leave every cell as old as stepping through them would
+    @Test
+    public void skippedCyclesAgeTheCells () {
+        // A block, which never changes, and a blinker, whose middle cell stays and whose ends come and go
+        int[][] cells = {{2, 2}, {2, 3}, {3, 2}, {3, 3}, {8, 7}, {8, 8}, {8, 9}};
+        Simulation jumped = new Simulation(16, 16), stepped = new Simulation(16, 16);
+        for (Simulation simulation : new Simulation[] {jumped, stepped}) {
+            simulation.setTrackingAges(true);
+            for (int[] cell : cells) simulation.setAlive(cell[0] * 16 + cell[1], true);
+            for (int generation = 0; generation < 10; generation++) simulation.advance();
+        }
+        assertEquals(2, jumped.getCyclePeriod());
+
+        for (int skip : new int[] {20, 1001}) {
+            jumped.ensureNextGen(); // As the app has it, the next generation drawn as well
+            jumped.jumpGenerations(skip);
+            for (int generation = 0; generation < skip; generation++) stepped.advance();
+            for (int i = 0; i < 16 * 16; i++) {
+                assertEquals("cell " + i + " after " + skip, stepped.getBoard().getAge(i), jumped.getBoard().getAge(i));
+            }
+            jumped.advance();
+            stepped.advance();
+            for (int i = 0; i < 16 * 16; i++) {
+                assertEquals("cell " + i + " a generation later", stepped.getBoard().getAge(i), jumped.getBoard().getAge(i));
+            }
+        }
+    }
+}